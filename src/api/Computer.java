@@ -30,6 +30,14 @@ public interface Computer<R> extends Remote {
 	 */
 	Result<R> collectResult() throws RemoteException, InterruptedException;
 	
+	/**
+	 * Ask a queued or running task to stop
+	 * (the task still produces a result, so it is collected as usual)
+	 * @param uid of the task
+	 * @throws RemoteException
+	 */
+	void cancelTask(long uid) throws RemoteException;
+	
 	/**
 	 * Update Shared State on Computer
 	 * Computer may choose whic stat eto keep, unless force parameter set to true
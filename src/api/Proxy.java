@@ -36,6 +36,13 @@ public interface Proxy<R> {
 	 * @throws ProxyStoppedException if proxy is already stopped (for example if computer has disconected)
 	 */
 	void assignTask(Task<R> task) throws ProxyStoppedException;
+	
+	/**
+	 * Ask the associated Computer to stop a task it was assigned
+	 * @param uid of the task
+	 * @throws ProxyStoppedException if proxy is already stopped (for example if computer has disconected)
+	 */
+	void cancelTask(long uid) throws ProxyStoppedException;
 		
 	/**
 	 * Get the number of tasks enqued on the associated Computer (running, or in the queue)
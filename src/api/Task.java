@@ -70,6 +70,12 @@ public interface Task<R> extends Serializable {
 	 */
 	Result<R> call(SharedState currentState, ComputerCallback<R> callback);
 	
+	/**
+	 * Ask the task to stop executing as soon as it can
+	 * (cooperative: a task that does not check for it runs to completion)
+	 */
+	void cancel();
+	
 	/**
 	 * Updates the known state in the executing task
 	 * @param updatedState
@@ -0,0 +1,93 @@
+package ramsey;
+
+import java.util.SplittableRandom;
+
+import api.ComputerCallback;
+
+/**
+ * Simulated annealing search.
+ * Flips one random edge per step, and keeps the flip if it does not raise the clique count,
+ * or otherwise with a probability that shrinks as the temperature cools.
+ * Each step costs only the cliques through one edge, so it suits computers
+ * that cannot afford a scan of the whole neighbourhood.
+ * 
+ * @author Michael Nekrasov
+ * @author Roman Kazarin
+ *
+ */
+public class AnnealingSearch implements SearchStrategy {
+
+	private static final long serialVersionUID = -5218907408063624717L;
+	
+	public static final double DEFAULT_START_TEMPERATURE = 2.0;
+	public static final double DEFAULT_COOLING = 0.99999;
+	public static final long DEFAULT_MAX_STEPS = 20000000;
+	
+	private final double startTemperature;
+	private final double cooling;
+	private final long maxSteps;
+	
+	private transient SplittableRandom random;
+	
+	public AnnealingSearch() {
+		this(DEFAULT_START_TEMPERATURE, DEFAULT_COOLING, DEFAULT_MAX_STEPS);
+	}
+	
+	/**
+	 * Create annealing search
+	 * @param startTemperature temperature at the start of each graph
+	 * @param cooling factor temperature is multiplied by after every step
+	 * @param maxSteps number of steps on one graph before giving up
+	 */
+	public AnnealingSearch(double startTemperature, double cooling, long maxSteps) {
+		this.startTemperature = startTemperature;
+		this.cooling = cooling;
+		this.maxSteps = maxSteps;
+	}
+
+	@Override
+	public boolean findCounterExample(Graph g, ComputerCallback<Graph> callback, SearchMonitor monitor) throws Exception {
+		if(random == null) random = new SplittableRandom();
+		
+		int count = g.cliqueCount();
+		double temperature = startTemperature;
+		
+		for(long step=0; step < maxSteps; step++) {
+			if(count == 0) return true;
+			
+			int edge = g.flipRandom(random);
+			int i = edge / g.size();
+			int j = edge % g.size();
+			
+			//cost of the flip is the reverse of the cost of flipping it back
+			int delta = -g.flipDelta(i,j);
+			
+			if(delta <= 0 || random.nextDouble() < Math.exp(-delta / temperature))
+				count += delta;
+			else
+				g.flip(i,j);
+			
+			temperature *= cooling;
+			if(!monitor.onStep(g, count)) return count == 0;
+		}
+		return count == 0;
+	}
+	
+	/**
+	 * Annealing keeps no state between graphs, so a copy starts cooling again from the top
+	 */
+	@Override
+	public AnnealingSearch copy() {
+		return new AnnealingSearch(startTemperature, cooling, maxSteps);
+	}
+	
+	@Override
+	public void setRandom(SplittableRandom random) {
+		this.random = random;
+	}
+	
+	@Override
+	public String getName() {
+		return "Annealing";
+	}
+}
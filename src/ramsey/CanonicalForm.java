@@ -0,0 +1,457 @@
+package ramsey;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Canonical labeling of a 2-colored complete graph.
+ * Two graphs have equal canonical forms if and only if one is an isomorph of the other,
+ * or of the other with its colors swapped (a counterexample stays a counterexample under both,
+ * as long as both colors have the same clique size; otherwise colors are never swapped).
+ *
+ * Computed nauty-style: the nodes are split into cells by repeated neighbor counting
+ * (equitable refinement), and ties are broken by a depth first search that individualizes
+ * nodes of the first smallest cell. Branches whose refinement trace is worse than the best
+ * one found so far are cut. Automorphisms discovered at the leaves end the current branch
+ * early, and are used to skip nodes that lie in the same orbit as a node that was already explored.
+ *
+ * @author Michael Nekrasov
+ * @author Roman Kazarin
+ *
+ */
+public final class CanonicalForm implements Serializable {
+
+	private static final long serialVersionUID = -3630180810286932914L;
+
+	private final int size;
+	private final long[] rows;
+	private final boolean complemented;
+	private final long hash;
+
+	private CanonicalForm(int size, long[] rows, boolean complemented) {
+		this.size = size;
+		this.rows = rows;
+		this.complemented = complemented;
+
+		long h = size;
+		for(long row: rows)
+			h = mix(h ^ row);
+		this.hash = h;
+	}
+
+	/**
+	 * Compute the canonical form of a graph
+	 * @param graph to label
+	 * @return canonical form
+	 */
+	public static CanonicalForm of(Graph graph) {
+		int size = graph.size();
+		long[] original = new long[size];
+		long[] complement = new long[size];
+		for(int node=0; node < size; node++) {
+			original[node] = graph.neighborMask(node, true);
+			complement[node] = graph.neighborMask(node, false);
+		}
+
+		long[] a = new Search(original).run();
+		if(!graph.isSymmetric())
+			return new CanonicalForm(size, a, false);
+		long[] b = new Search(complement).run();
+
+		//of the two colorings pick the larger canonical matrix
+		if(compare(b, a) > 0)
+			return new CanonicalForm(size, b, true);
+		return new CanonicalForm(size, a, false);
+	}
+
+	/**
+	 * Get number of nodes
+	 * @return graph size
+	 */
+	public int size() { return size; }
+
+	/**
+	 * Was the canonical form reached by swapping the colors of the graph
+	 * @return true if colors were swapped
+	 */
+	public boolean isComplemented() { return complemented; }
+
+	/**
+	 * Get 64 bit hash of the canonical form (equal for isomorphic graphs)
+	 * @return the hash
+	 */
+	public long hash() { return hash; }
+
+	/**
+	 * Get value of an edge in the canonically labeled graph
+	 * @param row
+	 * @param col
+	 * @return value
+	 */
+	public boolean get(int row, int col) {
+		return (rows[row] & (1L << col)) != 0;
+	}
+
+	/**
+	 * Encode the upper triangle of the canonically labeled graph as a string
+	 * @return string of 1s and 0s
+	 */
+	public String asBitString() {
+		StringBuilder out = new StringBuilder(size*(size-1)/2);
+		for(int row=0; row < size; row++) {
+			for(int col=row+1; col < size; col++) {
+				out.append( get(row,col)?1:0 );
+			}
+		}
+		return out.toString();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(!(obj instanceof CanonicalForm)) return false;
+		CanonicalForm o = (CanonicalForm) obj;
+		return size == o.size && hash == o.hash && Arrays.equals(rows, o.rows);
+	}
+
+	@Override
+	public int hashCode() {
+		return (int)(hash ^ (hash >>> 32));
+	}
+
+	@Override
+	public String toString() {
+		return "Canonical ("+size+") "+Long.toHexString(hash)+(complemented?" inverted":"");
+	}
+
+	//--------------------------------------------------------
+	//					Private Methods
+	//--------------------------------------------------------
+
+	/**
+	 * Lexicographic order of two adjacency matrices of the same size
+	 */
+	private static int compare(long[] a, long[] b) {
+		for(int i=0; i < a.length; i++) {
+			if(a[i] != b[i])
+				return Long.compareUnsigned(a[i], b[i]);
+		}
+		return 0;
+	}
+
+	private static long mix(long h) {
+		h *= 0x9E3779B97F4A7C15L;
+		return h ^ (h >>> 29);
+	}
+
+	/**
+	 * Search tree over one coloring of the graph
+	 */
+	private static class Search {
+
+		private final long[] adj;
+		private final int size;
+
+		private final long[] trace;
+		private final int[] fixed;
+
+		private Leaf first;
+		private Leaf best;
+		private int backjump = Integer.MAX_VALUE;
+
+		private final List<int[]> automorphisms = new ArrayList<>();
+		private final long[] buckets = new long[Graph.MAX_SIZE+1];
+
+		Search(long[] adj) {
+			this.adj = adj;
+			this.size = adj.length;
+			this.trace = new long[size+1];
+			this.fixed = new int[size+1];
+		}
+
+		long[] run() {
+			long[] cells = new long[Math.max(size,1)];
+			int count = 0;
+			if(size > 0)
+				cells[count++] = size == Graph.MAX_SIZE ? -1L : (1L << size) - 1;
+
+			Deque<Long> splitters = new ArrayDeque<>();
+			if(count > 0) splitters.add(cells[0]);
+
+			Partition root = new Partition(cells, count);
+			trace[0] = refine(root, splitters);
+			search(root, 0);
+			return best.matrix;
+		}
+
+		private void search(Partition p, int level) {
+			if(!isPrefixAtLeastBest(level)) return;
+
+			int target = p.targetCell();
+			if(target < 0) {
+				leaf(p, level);
+				return;
+			}
+
+			long explored = 0;
+			int[] orbits = null;
+			int known = 0;
+			for(long vs = p.cells[target]; vs != 0; vs &= vs-1) {
+				int v = Long.numberOfTrailingZeros(vs);
+				
+				//merge orbits with automorphisms found since last child
+				if(known < automorphisms.size()) {
+					if(orbits == null) orbits = identity();
+					for(; known < automorphisms.size(); known++)
+						mergeOrbits(orbits, automorphisms.get(known), level);
+				}
+				if(orbits != null && inExploredOrbit(orbits, v, explored)) continue;
+				explored |= 1L << v;
+
+				Partition child = p.individualize(target, v);
+				Deque<Long> splitters = new ArrayDeque<>();
+				splitters.add(1L << v);
+				fixed[level] = v;
+				trace[level+1] = refine(child, splitters);
+				search(child, level+1);
+				
+				if(backjump < level) return;
+				backjump = Integer.MAX_VALUE;
+			}
+		}
+
+		/**
+		 * Is trace along current path (up to level) not worse than best path
+		 */
+		private boolean isPrefixAtLeastBest(int level) {
+			if(best == null) return true;
+			for(int i=0; i <= level && i <= best.depth; i++) {
+				if(trace[i] != best.trace[i])
+					return trace[i] > best.trace[i];
+			}
+			return true;
+		}
+
+		private void leaf(Partition p, int level) {
+			int[] labels = new int[size];
+			for(int i=0; i < size; i++)
+				labels[i] = Long.numberOfTrailingZeros(p.cells[i]);
+
+			long[] permuted = new long[size];
+			for(int i=0; i < size; i++) {
+				long row = adj[labels[i]];
+				long out = 0;
+				for(int j=0; j < size; j++) {
+					if((row & (1L << labels[j])) != 0)
+						out |= 1L << j;
+				}
+				permuted[i] = out;
+			}
+			Leaf current = new Leaf(permuted, labels, Arrays.copyOf(trace, level+1), Arrays.copyOf(fixed, level), level);
+
+			if(first == null) {
+				first = best = current;
+				return;
+			}
+
+			//same graph reached by a different labeling: an automorphism
+			if(isAutomorphism(first, current) || isAutomorphism(best, current)) return;
+
+			int cmp = compareTrace(current, best);
+			if(cmp > 0 || (cmp == 0 && compare(permuted, best.matrix) > 0))
+				best = current;
+		}
+
+		/**
+		 * Record automorphism if both leaves have the same graph,
+		 * and jump back to where the two paths split (the rest of the branch is its image)
+		 */
+		private boolean isAutomorphism(Leaf known, Leaf current) {
+			if(compareTrace(known, current) != 0 || compare(known.matrix, current.matrix) != 0)
+				return false;
+
+			int[] gamma = new int[size];
+			for(int i=0; i < size; i++)
+				gamma[known.labels[i]] = current.labels[i];
+			automorphisms.add(gamma);
+
+			int common = 0;
+			while(common < known.fixed.length && common < current.fixed.length 
+					&& known.fixed[common] == current.fixed[common])
+				common++;
+			backjump = common;
+			return true;
+		}
+
+		private static int compareTrace(Leaf a, Leaf b) {
+			for(int i=0; i <= a.depth && i <= b.depth; i++) {
+				if(a.trace[i] != b.trace[i])
+					return a.trace[i] > b.trace[i] ? 1 : -1;
+			}
+			return Integer.compare(a.depth, b.depth);
+		}
+
+		private int[] identity() {
+			int[] parent = new int[size];
+			for(int i=0; i < size; i++) parent[i] = i;
+			return parent;
+		}
+
+		/**
+		 * Join orbits by an automorphism, if it fixes every node individualized above this level
+		 */
+		private void mergeOrbits(int[] parent, int[] gamma, int level) {
+			for(int i=0; i < level; i++)
+				if(gamma[fixed[i]] != fixed[i]) return;
+
+			for(int i=0; i < size; i++)
+				union(parent, i, gamma[i]);
+		}
+
+		/**
+		 * Is v in the same orbit as an explored node
+		 */
+		private boolean inExploredOrbit(int[] parent, int v, long explored) {
+			int root = find(parent, v);
+			for(long us = explored; us != 0; us &= us-1) {
+				if(find(parent, Long.numberOfTrailingZeros(us)) == root)
+					return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Refine partition until it is equitable
+		 * @return trace of the refinement (a labeling invariant)
+		 */
+		private long refine(Partition p, Deque<Long> splitters) {
+			long h = mix(p.count);
+
+			while(!splitters.isEmpty()) {
+				long w = splitters.poll();
+
+				for(int c=0; c < p.count; c++) {
+					long x = p.cells[c];
+					if(Long.bitCount(x) == 1) continue;
+
+					int min = Integer.MAX_VALUE, max = -1;
+					for(long vs = x; vs != 0; vs &= vs-1) {
+						int v = Long.numberOfTrailingZeros(vs);
+						int n = Long.bitCount(adj[v] & w);
+						buckets[n] |= 1L << v;
+						if(n < min) min = n;
+						if(n > max) max = n;
+					}
+
+					if(min == max) {
+						buckets[min] = 0;
+						h = mix(h ^ (c*31L + min));
+						continue;
+					}
+
+					//split in order of neighbor count
+					List<Long> pieces = new ArrayList<>();
+					for(int n=min; n <= max; n++) {
+						if(buckets[n] != 0) {
+							pieces.add(buckets[n]);
+							h = mix(h ^ (((long)c << 40) ^ ((long)n << 20) ^ Long.bitCount(buckets[n])));
+							buckets[n] = 0;
+						}
+					}
+					p.replace(c, pieces);
+					splitters.addAll(pieces);
+					c += pieces.size()-1;
+				}
+			}
+			return h;
+		}
+
+		private static int find(int[] parent, int i) {
+			while(parent[i] != i) {
+				parent[i] = parent[parent[i]];
+				i = parent[i];
+			}
+			return i;
+		}
+
+		private static void union(int[] parent, int a, int b) {
+			int ra = find(parent, a), rb = find(parent, b);
+			if(ra != rb) parent[Math.max(ra,rb)] = Math.min(ra,rb);
+		}
+	}
+
+	/**
+	 * Leaf of the search tree
+	 */
+	private static class Leaf {
+		final long[] matrix;
+		final int[] labels;
+		final long[] trace;
+		final int[] fixed;
+		final int depth;
+
+		Leaf(long[] matrix, int[] labels, long[] trace, int[] fixed, int depth) {
+			this.matrix = matrix;
+			this.labels = labels;
+			this.trace = trace;
+			this.fixed = fixed;
+			this.depth = depth;
+		}
+	}
+
+	/**
+	 * Ordered partition of nodes into cells (each cell a bit mask)
+	 */
+	private static class Partition {
+		long[] cells;
+		int count;
+
+		Partition(long[] cells, int count) {
+			this.cells = cells;
+			this.count = count;
+		}
+
+		/**
+		 * First smallest cell with more than one node
+		 * @return index of cell, or -1 if partition is discrete
+		 */
+		int targetCell() {
+			int best = -1, bestSize = Integer.MAX_VALUE;
+			for(int c=0; c < count; c++) {
+				int n = Long.bitCount(cells[c]);
+				if(n > 1 && n < bestSize) {
+					best = c;
+					bestSize = n;
+				}
+			}
+			return best;
+		}
+
+		/**
+		 * Copy partition with node v split off in front of its cell
+		 */
+		Partition individualize(int cell, int v) {
+			List<Long> pieces = new ArrayList<>(2);
+			pieces.add(1L << v);
+			pieces.add(cells[cell] & ~(1L << v));
+
+			Partition p = new Partition(Arrays.copyOf(cells, cells.length), count);
+			p.replace(cell, pieces);
+			return p;
+		}
+
+		/**
+		 * Replace cell at index with the given pieces (in order)
+		 */
+		void replace(int cell, List<Long> pieces) {
+			int extra = pieces.size()-1;
+			System.arraycopy(cells, cell+1, cells, cell+1+extra, count-cell-1);
+			for(int i=0; i < pieces.size(); i++)
+				cells[cell+i] = pieces.get(i);
+			count += extra;
+		}
+	}
+}
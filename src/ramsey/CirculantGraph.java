@@ -0,0 +1,211 @@
+package ramsey;
+
+/**
+ * A circulant graph: nodes are arranged in a cycle, and the value of an edge depends only on
+ * the distance between its nodes around the cycle. So there are only size/2 independent values
+ * (one per distance), and the graph looks the same from every node.
+ *
+ * Setting or flipping an edge sets or flips every edge of the same distance (its orbit),
+ * so the graph stays circulant. Since every node is in the same number of cliques,
+ * only the cliques through node 0 are counted, which is about size times cheaper.
+ *
+ * Flips change whole orbits, so the graph can not be tracked by a CliqueParticipation table
+ * (search it with a CirculantSearch, or any strategy that uses only flip() and flipDelta()).
+ *
+ * @author Michael Nekrasov
+ * @author Roman Kazarin
+ *
+ */
+public class CirculantGraph extends Graph {
+
+	private static final long serialVersionUID = -2934587104563928814L;
+
+	/**
+	 * Create circulant graph with all edges zero
+	 * @param size of graph to create
+	 */
+	public CirculantGraph(int size) {
+		super(size);
+	}
+	
+	/**
+	 * Create circulant graph with all edges zero for an R(s,t) search
+	 * @param size of graph to create
+	 * @param setCliqueSize size of cliques counted among edges of color 1 (s)
+	 * @param unsetCliqueSize size of cliques counted among edges of color 0 (t)
+	 */
+	public CirculantGraph(int size, int setCliqueSize, int unsetCliqueSize) {
+		super(size, setCliqueSize, unsetCliqueSize);
+	}
+
+	/**
+	 * Create circulant graph with the edges of node 0 of an existing graph
+	 * (an edge of distance d is set if the edge (0,d) or (0,size-d) is set)
+	 * @param graph to take node 0 and the clique sizes from
+	 */
+	public CirculantGraph(Graph graph) {
+		super(graph.size(), graph.cliqueSize(true), graph.cliqueSize(false));
+		long connection = graph.neighborMask(0, true);
+		for(int distance=1; distance <= numDistances(); distance++) {
+			if((connection & (1L << distance)) != 0 || (connection & (1L << (size()-distance))) != 0)
+				setDistance(distance, true);
+		}
+	}
+
+	/**
+	 * Copy Constructor
+	 * @param toCopy
+	 */
+	public CirculantGraph(CirculantGraph toCopy) {
+		super(toCopy);
+	}
+
+	/**
+	 * Get number of independent distances (orbits of edges)
+	 * @return number of distances
+	 */
+	public int numDistances() {
+		return size()/2;
+	}
+
+	/**
+	 * Get distance between two nodes around the cycle
+	 * @param i node
+	 * @param j other node
+	 * @return distance between 1 and numDistances() (0 for i == j)
+	 */
+	public int distance(int i, int j) {
+		int d = Math.abs(i-j);
+		return Math.min(d, size()-d);
+	}
+
+	/**
+	 * Get value of all edges of a distance
+	 * @param distance between 1 and numDistances()
+	 * @return value
+	 */
+	public boolean getDistance(int distance) {
+		return get(0, distance);
+	}
+
+	/**
+	 * Set value of all edges of a distance
+	 * @param distance between 1 and numDistances()
+	 * @param value
+	 */
+	public void setDistance(int distance, boolean value) {
+		for(int i=0; i < size(); i++)
+			setEdge(i, (i+distance) % size(), value);
+	}
+
+	/**
+	 * Flip value of all edges of a distance
+	 * @param distance between 1 and numDistances()
+	 */
+	public void flipDistance(int distance) {
+		setDistance(distance, !getDistance(distance));
+	}
+
+	/**
+	 * Get the change in clique count that flipping all edges of a distance would cause
+	 * (the graph is not modified)
+	 * @param distance between 1 and numDistances()
+	 * @return clique count after the flip minus clique count before it
+	 */
+	public int flipDistanceDelta(int distance) {
+		long connection = neighborMask(0, true);
+		long orbit = (1L << distance) | (1L << (size()-distance));
+		return cliqueCount(connection ^ orbit) - cliqueCount(connection);
+	}
+
+	/**
+	 * Set value of the edge, and of all edges of the same distance
+	 */
+	@Override
+	public void set(int row, int col, boolean value) {
+		if(row == col) return;
+		setDistance(distance(row, col), value);
+	}
+
+	/**
+	 * Flip value of the edge, and of all edges of the same distance
+	 */
+	@Override
+	public void flip(int row, int col) {
+		if(row == col) return;
+		flipDistance(distance(row, col));
+	}
+
+	@Override
+	public int cliqueCount() {
+		return cliqueCount(neighborMask(0, true));
+	}
+
+	@Override
+	public int cliqueCountParallel() {
+		return cliqueCount();
+	}
+
+	/**
+	 * Get the change in clique count that flip(i,j) would cause
+	 * (flipping all edges of the same distance)
+	 */
+	@Override
+	public int flipDelta(int i, int j) {
+		return flipDistanceDelta(distance(i, j));
+	}
+
+	//--------------------------------------------------------
+	//					Private Methods
+	//--------------------------------------------------------
+
+	/**
+	 * Count cliques of a circulant graph given by the edges of node 0
+	 * (every node is in as many cliques of a color as node 0, and each of them is counted once per node)
+	 * @param connection neighbors of node 0 via set edges
+	 * @return clique count
+	 */
+	private int cliqueCount(long connection) {
+		long unset = ~connection & allNodes() & ~1L;
+		int set = cliqueCountWithin(connection, connection, cliqueSize(true)-1) * size() / cliqueSize(true);
+		return set + cliqueCountWithin(unset, unset, cliqueSize(false)-1) * size() / cliqueSize(false);
+	}
+
+	/**
+	 * Count cliques of a given size within a mask, in a circulant graph of one color
+	 * @param nodes mask of candidate nodes
+	 * @param neighbors of node 0 by edges of the color
+	 * @param cliqueSize number of nodes in a clique
+	 * @return number of cliques
+	 */
+	private int cliqueCountWithin(long nodes, long neighbors, int cliqueSize) {
+		if(cliqueSize == 0) return 1;
+		if(cliqueSize == 1) return Long.bitCount(nodes);
+		
+		int count = 0;
+		for(long js = nodes; js != 0; js &= js-1) {
+			int j = Long.numberOfTrailingZeros(js);
+			count += cliqueCountWithin(nodes & rotate(neighbors, j) & (-2L << j), neighbors, cliqueSize-1);
+		}
+		return count;
+	}
+
+	/**
+	 * Get neighbors of a node from the neighbors of node 0 (rotating them around the cycle)
+	 * @param neighbors of node 0
+	 * @param node to get neighbors of
+	 * @return neighbors of node
+	 */
+	private long rotate(long neighbors, int node) {
+		if(node == 0) return neighbors;
+		return ((neighbors << node) | (neighbors >>> (size()-node))) & allNodes();
+	}
+
+	/**
+	 * Mask with a bit set for every node in the graph
+	 * @return the mask
+	 */
+	private long allNodes() {
+		return size() == MAX_SIZE ? -1L : (1L << size()) - 1;
+	}
+}
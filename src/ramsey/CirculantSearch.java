@@ -0,0 +1,97 @@
+package ramsey;
+
+import java.util.SplittableRandom;
+
+import api.ComputerCallback;
+
+/**
+ * Taboo search restricted to circulant graphs.
+ * Instead of single edges it flips whole distances (size/2 choices per step instead of about size^2/2),
+ * and counts cliques only through one node, so each step is far cheaper than in a full search.
+ * The search starts from the circulant graph given by the edges of node 0,
+ * and when it finds a counterexample copies it onto the searched graph.
+ * 
+ * @author Michael Nekrasov
+ * @author Roman Kazarin
+ *
+ */
+public class CirculantSearch implements SearchStrategy {
+
+	private static final long serialVersionUID = 6185370317385203178L;
+	
+	public static final long DEFAULT_MAX_STEPS = 100000;
+	
+	private final TabooList taboo;
+	private final long maxSteps;
+	
+	public CirculantSearch() {
+		this(new TabooList(), DEFAULT_MAX_STEPS);
+	}
+	
+	/**
+	 * Create circulant search
+	 * @param taboo list of recently flipped distances (its tenure is fitted to the number of distances)
+	 * @param maxSteps number of steps on one graph before giving up
+	 */
+	public CirculantSearch(TabooList taboo, long maxSteps) {
+		this.taboo = taboo;
+		this.maxSteps = maxSteps;
+	}
+
+	@Override
+	public boolean findCounterExample(Graph g, ComputerCallback<Graph> callback, SearchMonitor monitor) throws Exception {
+		CirculantGraph circulant = new CirculantGraph(g);
+		int distances = circulant.numDistances();
+		int count = circulant.cliqueCount();
+		
+		//a few distances can be taboo at a time, not all of them
+		taboo.setTenure(Math.max(1, distances/3));
+		taboo.resetAspiration(count);
+		
+		for(long step=0; count > 0 && step < maxSteps; step++) {
+			int bestDelta = Integer.MAX_VALUE;
+			int bestDistance = -1;
+			for(int d=1; d <= distances; d++) {
+				int delta = circulant.flipDistanceDelta(d);
+				
+				//distances are remembered as edges (0,d)
+				if(delta < bestDelta && taboo.admits(0, d, count+delta)) {
+					bestDelta = delta;
+					bestDistance = d;
+				}
+			}
+			if(bestDistance < 0) return false;
+			
+			circulant.flipDistance(bestDistance);
+			count += bestDelta;
+			taboo.add(0, bestDistance);
+			taboo.nextIteration(count);
+			
+			//a stop on the step that solves it still copies the counterexample
+			if(!monitor.onStep(circulant, count) && count > 0) return false;
+		}
+		if(count > 0) return false;
+		
+		//YAY FOUND IT!
+		for(int i=0; i < g.size(); i++)
+			for(int j=i+1; j < g.size(); j++)
+				g.set(i, j, circulant.get(i, j));
+		return true;
+	}
+	
+	@Override
+	public CirculantSearch copy() {
+		return new CirculantSearch(new TabooList(taboo), maxSteps);
+	}
+	
+	/**
+	 * Circulant search is deterministic (ties go to the shortest distance)
+	 */
+	@Override
+	public void setRandom(SplittableRandom random) {}
+	
+	@Override
+	public String getName() {
+		return "Circulant";
+	}
+}
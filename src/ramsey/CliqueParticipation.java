@@ -0,0 +1,267 @@
+package ramsey;
+
+import java.util.Arrays;
+
+/**
+ * Keeps a live table of how many monochromatic cliques every edge of a graph is in,
+ * and how many cliques flipping that edge would create.
+ *
+ * The table is built once, and then updated on every flip by visiting only the cliques
+ * (and near cliques) that pass through the flipped edge. The effect of flipping any edge
+ * can then be read from the table without enumerating cliques, which makes it a cheap
+ * base for search strategies that need to rank all possible flips.
+ *
+ * The table can also track only the cliques each edge is in (not the cliques a flip would create).
+ * Flips are then much cheaper, as near cliques are not visited, and flip deltas are counted on demand.
+ * Either way, the edges that are in at least one clique (the only ones whose flip can lower the count)
+ * are kept in a list that is updated as cliques are created and destroyed.
+ *
+ * The graph should only be modified through flip(), or the table will be out of date.
+ *
+ * @author Michael Nekrasov
+ * @author Roman Kazarin
+ *
+ */
+public class CliqueParticipation {
+
+	private final Graph graph;
+	private final int size;
+
+	/** Number of monochromatic cliques each edge is in */
+	private final int[] inside;
+
+	/** Number of monochromatic cliques each edge would be in if flipped (null if not tracked) */
+	private final int[] potential;
+
+	/** Edges in at least one clique (by index), and the position of every edge in that list (-1 if not in it) */
+	private final int[] cliqueEdges, cliqueEdgePosition;
+	private int numCliqueEdges;
+
+	private int count;
+
+	/**
+	 * Build the table for a graph
+	 * @param graph to track (modify only via flip())
+	 */
+	public CliqueParticipation(Graph graph) {
+		this(graph, true);
+	}
+
+	/**
+	 * Build the table for a graph
+	 * @param graph to track (modify only via flip())
+	 * @param trackPotential should the cliques every flip would create be tracked too
+	 * (if not, flipDelta() counts them on demand)
+	 */
+	public CliqueParticipation(Graph graph, boolean trackPotential) {
+		if(graph instanceof CirculantGraph)
+			throw new IllegalArgumentException("Circulant graphs flip whole distances, and can not be tracked edge by edge");
+		this.graph = graph;
+		this.size = graph.size();
+		this.inside = new int[size*size];
+		this.potential = trackPotential ? new int[size*size] : null;
+		this.cliqueEdges = new int[size*size];
+		this.cliqueEdgePosition = new int[size*size];
+		Arrays.fill(cliqueEdgePosition, -1);
+
+		for(int i=0; i < size; i++) {
+			for(int j=i+1; j < size; j++) {
+				int in = graph.cliqueCountContaining(i, j);
+				inside[index(i,j)] = in;
+				if(in > 0) addCliqueEdge(index(i,j));
+				if(trackPotential)
+					potential[index(i,j)] = in + graph.flipDelta(i, j);
+			}
+		}
+		count = graph.cliqueCountParallel();
+	}
+
+	/**
+	 * Get the tracked graph
+	 * @return the graph
+	 */
+	public Graph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Get current clique count of the graph
+	 * @return clique count
+	 */
+	public int cliqueCount() {
+		return count;
+	}
+
+	/**
+	 * Get the number of monochromatic cliques the edge (i,j) is in
+	 * @param i node of edge
+	 * @param j other node of edge
+	 * @return number of cliques
+	 */
+	public int participation(int i, int j) {
+		return inside[index(i,j)];
+	}
+
+	/**
+	 * Get the change in clique count that flipping the edge (i,j) would cause
+	 * @param i node of edge
+	 * @param j other node of edge
+	 * @return clique count after the flip minus clique count before it
+	 */
+	public int flipDelta(int i, int j) {
+		if(potential == null) return graph.flipDelta(i, j);
+		int index = index(i,j);
+		return potential[index] - inside[index];
+	}
+
+	/**
+	 * Get number of edges that are in at least one monochromatic clique
+	 * @return number of edges
+	 */
+	public int cliqueEdgeCount() {
+		return numCliqueEdges;
+	}
+
+	/**
+	 * Get the smaller node of an edge in the list of edges in at least one clique
+	 * (the list is in no particular order, and changes on every flip)
+	 * @param n position in list (below cliqueEdgeCount())
+	 * @return node
+	 */
+	public int cliqueEdgeRow(int n) {
+		return cliqueEdges[n] / size;
+	}
+
+	/**
+	 * Get the larger node of an edge in the list of edges in at least one clique
+	 * @param n position in list (below cliqueEdgeCount())
+	 * @return node
+	 */
+	public int cliqueEdgeColumn(int n) {
+		return cliqueEdges[n] % size;
+	}
+
+	/**
+	 * Flip an edge of the graph, and update the table
+	 * @param a node of edge
+	 * @param b other node of edge
+	 */
+	public void flip(int a, int b) {
+		boolean oldValue = graph.get(a, b);
+		graph.flip(a, b);
+
+		long members = (1L << a) | (1L << b);
+		long candidates = ~members & allNodes();
+
+		//cliques of old color through the edge are destroyed, of the new color are created
+		collect(a, b, !oldValue, members, candidates, -1, -1, graph.cliqueSize(!oldValue)-2, 1);
+		collect(a, b, oldValue, members, candidates, -1, -1, graph.cliqueSize(oldValue)-2, -1);
+	}
+
+	//--------------------------------------------------------
+	//					Private Methods
+	//--------------------------------------------------------
+
+	/**
+	 * Visit every set of nodes containing the edge (a,b), in which all other edges
+	 * have the given value, except for at most one (the defect, only if potential is tracked).
+	 * These are the only sets whose contribution to the table changes when (a,b) is flipped.
+	 *
+	 * @param a node of flipped edge
+	 * @param b other node of flipped edge
+	 * @param value color of the set
+	 * @param members nodes chosen so far
+	 * @param candidates nodes that may still be added
+	 * @param defectU node of the defect edge (or -1 if none)
+	 * @param defectV other node of the defect edge
+	 * @param remaining number of nodes left to add
+	 * @param sign +1 if (a,b) now has the value, -1 if it had it before the flip
+	 */
+	private void collect(int a, int b, boolean value, long members, long candidates,
+			int defectU, int defectV, int remaining, int sign) {
+
+		if(remaining == 0) {
+			apply(a, b, members, defectU, defectV, sign);
+			return;
+		}
+
+		for(long vs = candidates; vs != 0; vs &= vs-1) {
+			int v = Long.numberOfTrailingZeros(vs);
+			long missing = members & ~graph.neighborMask(v, value);
+			int defects = Long.bitCount(missing);
+
+			if(defects == 0)
+				collect(a, b, value, members | (1L << v), candidates & (-2L << v),
+						defectU, defectV, remaining-1, sign);
+			else if(defects == 1 && defectU < 0 && potential != null)
+				collect(a, b, value, members | (1L << v), candidates & (-2L << v),
+						v, Long.numberOfTrailingZeros(missing), remaining-1, sign);
+		}
+	}
+
+	/**
+	 * Update table with the contribution of one set of nodes
+	 * @param a node of flipped edge
+	 * @param b other node of flipped edge
+	 * @param members nodes in the set
+	 * @param defectU node of the defect edge (or -1 if none)
+	 * @param defectV other node of the defect edge
+	 * @param sign +1 if contribution is added, -1 if removed
+	 */
+	private void apply(int a, int b, long members, int defectU, int defectV, int sign) {
+		if(defectU >= 0) {
+			//near clique that would be completed by flipping the defect
+			potential[index(defectU, defectV)] += sign;
+			return;
+		}
+
+		//a full clique, that the flipped edge was/is the only defect of
+		for(long us = members; us != 0; us &= us-1) {
+			int u = Long.numberOfTrailingZeros(us);
+			for(long vs = members & (-2L << u); vs != 0; vs &= vs-1) {
+				int index = index(u, Long.numberOfTrailingZeros(vs));
+				inside[index] += sign;
+				if(inside[index] == 0) removeCliqueEdge(index);
+				else if(inside[index] == 1 && sign > 0) addCliqueEdge(index);
+			}
+		}
+		if(potential != null)
+			potential[index(a,b)] -= sign;
+		count += sign;
+	}
+
+	private void addCliqueEdge(int index) {
+		cliqueEdgePosition[index] = numCliqueEdges;
+		cliqueEdges[numCliqueEdges++] = index;
+	}
+
+	/**
+	 * Remove edge from the list of edges in at least one clique (moving the last edge in its place)
+	 * @param index of edge
+	 */
+	private void removeCliqueEdge(int index) {
+		int position = cliqueEdgePosition[index];
+		int last = cliqueEdges[--numCliqueEdges];
+		cliqueEdges[position] = last;
+		cliqueEdgePosition[last] = position;
+		cliqueEdgePosition[index] = -1;
+	}
+
+	/**
+	 * Position of edge in the table
+	 * @param i node of edge
+	 * @param j other node of edge
+	 * @return index in table
+	 */
+	private int index(int i, int j) {
+		return i < j ? i*size+j : j*size+i;
+	}
+
+	/**
+	 * Mask with a bit set for every node in the graph
+	 * @return the mask
+	 */
+	private long allNodes() {
+		return size == Graph.MAX_SIZE ? -1L : (1L << size) - 1;
+	}
+}
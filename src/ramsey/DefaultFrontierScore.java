@@ -0,0 +1,52 @@
+package ramsey;
+
+/**
+ * A score that adds a weight per node, subtracts penalties for every time the graph
+ * was handed out, every time a search from it failed and every graph of its lineage handed out,
+ * and favours graphs by every hour they joined after others. So larger graphs go first,
+ * until enough failures (of the graph or its siblings) let a fresh graph one size smaller win.
+ *
+ * @author Michael Nekrasov
+ * @author Roman Kazarin
+ *
+ */
+public class DefaultFrontierScore implements FrontierScore {
+
+	private static final long serialVersionUID = 5630945281093658723L;
+	private static final double HOUR = 3600000;
+
+	private final double sizeWeight;
+	private final double assignedPenalty;
+	private final double failedPenalty;
+	private final double lineagePenalty;
+	private final double ageWeight;
+
+	public DefaultFrontierScore() {
+		this(10, 1, 3, 0.5, 0.1);
+	}
+
+	/**
+	 * Create score
+	 * @param sizeWeight added per node
+	 * @param assignedPenalty subtracted per time the graph was handed out
+	 * @param failedPenalty subtracted per failed search from the graph
+	 * @param lineagePenalty subtracted per graph of the same lineage handed out
+	 * @param ageWeight added per hour the graph joined the frontier after the frontier was created
+	 */
+	public DefaultFrontierScore(double sizeWeight, double assignedPenalty, double failedPenalty, double lineagePenalty, double ageWeight) {
+		this.sizeWeight = sizeWeight;
+		this.assignedPenalty = assignedPenalty;
+		this.failedPenalty = failedPenalty;
+		this.lineagePenalty = lineagePenalty;
+		this.ageWeight = ageWeight;
+	}
+
+	@Override
+	public double score(Graph graph, long joined, int lineageDraws) {
+		return graph.size()*sizeWeight
+				- graph.timesAssigned()*assignedPenalty
+				- graph.timesFailedToFindSolution()*failedPenalty
+				- lineageDraws*lineagePenalty
+				+ joined/HOUR*ageWeight;
+	}
+}
@@ -0,0 +1,27 @@
+package ramsey;
+
+import java.io.Serializable;
+
+/**
+ * Scores how promising an unassigned graph of a GraphFrontier is to search from (higher is better).
+ *
+ * The frontier rescores a graph only when it reaches the top of its size, so a score
+ * must never grow while the graph waits (it may only drop as its lineage is handed out).
+ * Age is given as the time the graph joined the frontier, rather than as the time it waited,
+ * so that it orders graphs (older ones joined earlier) without every score dropping as time passes.
+ *
+ * @author Michael Nekrasov
+ * @author Roman Kazarin
+ *
+ */
+public interface FrontierScore extends Serializable {
+
+	/**
+	 * Score a graph
+	 * @param graph to score
+	 * @param joined time the graph joined the frontier (ms since the frontier was created)
+	 * @param lineageDraws number of graphs handed out so far that were extended from the same graph
+	 * @return the score
+	 */
+	double score(Graph graph, long joined, int lineageDraws);
+}
@@ -1,35 +1,85 @@
 package ramsey;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.BitSet;
-import java.util.Random;
+import java.util.SplittableRandom;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Represents a complete graph with a 2-color coloring
  * Can be used for finding mono-chrmoatic size cliques
  * Has helper methods for adding nodes, and generating graphs 
  * 
+ * Each color has its own clique size, so a graph is a candidate counterexample for R(s,t):
+ * cliques of s nodes are counted among edges of color 1, and of t nodes among edges of color 0
+ * (5 and 5 by default). The common clique sizes have dedicated counting loops,
+ * other sizes are counted by a generic recursion over the neighbor masks.
+ * 
+ * Each node keeps its neighbors of color 1 as a bit mask packed in a single long,
+ * (neighbors of color 0 are the complement) so cliques are counted by intersecting
+ * masks and using Long.bitCount(). This limits graphs to MAX_SIZE nodes.
+ * 
+ * A graph can also be compacted to just its upper triangle, n(n-1)/2 bits packed into longs,
+ * which is the only form written when the graph is serialized. The row masks
+ * are rebuilt the first time they are needed again.
+ * 
  * @author Michael Nekrasov
  * @author Roman Kazarin
  *
  */
 public class Graph implements Comparable<Graph>, Serializable{
 	
-	private static final long serialVersionUID = 5253025260499448857L;
+	private static final long serialVersionUID = 7009683624851137215L;
+	
+	/**
+	 * Largest supported graph (one 64 bit word per row)
+	 */
+	public static final int MAX_SIZE = Long.SIZE;
+	
+	/**
+	 * Smallest graph that cliqueCountParallel() splits across threads
+	 */
+	public static final int PARALLEL_COUNT_SIZE = 40;
 	
-	private static transient final int SUB_GRAPH_SIZE = 6;
-	private static transient final Random rnd = new Random();
+	/**
+	 * Clique size of both colors, unless given otherwise: R(5,5)
+	 */
+	public static final int DEFAULT_CLIQUE_SIZE = 5;
+	
+	private static transient final int PARALLEL_SPLITS_PER_THREAD = 4;
+	
+	/** Random numbers for callers that do not bring their own (one generator per thread, so threads do not contend) */
+	private static transient final ThreadLocal<SplittableRandom> threadRandom = new ThreadLocal<SplittableRandom>() {
+		@Override
+		protected SplittableRandom initialValue() {
+			return new SplittableRandom();
+		}
+	};
 	
-	private boolean solved = false;
-	private UUID id;
-	private UUID originId;
-	private int numTimesAssigned = 0;
-	private int numFailedToFindSolution = 0;
+	//All state is written by writeObject()
+	private transient boolean solved = false;
+	private transient UUID id;
+	private transient UUID originId;
+	private transient int numTimesAssigned = 0;
+	private transient int numFailedToFindSolution = 0;
 	private transient boolean assigned = false;
+	private transient CanonicalForm canonical;
 
-	private final BitSet matrix;
-	private final int size; 
+	private transient long[] rows;
+	private transient long[] packed;
+	private transient int size; 
+	private transient int setCliqueSize = DEFAULT_CLIQUE_SIZE;
+	private transient int unsetCliqueSize = DEFAULT_CLIQUE_SIZE;
 	
 	
 	/**
@@ -37,9 +87,25 @@ public class Graph implements Comparable<Graph>, Serializable{
 	 * @param size of graph to create
 	 */
 	public Graph (int size) {
+		this(size, DEFAULT_CLIQUE_SIZE, DEFAULT_CLIQUE_SIZE);
+	}
+	
+	/**
+	 * Create new matrix based Graph representation (zero filled) for an R(s,t) search
+	 * @param size of graph to create
+	 * @param setCliqueSize size of cliques counted among edges of color 1 (s)
+	 * @param unsetCliqueSize size of cliques counted among edges of color 0 (t)
+	 */
+	public Graph (int size, int setCliqueSize, int unsetCliqueSize) {
+		if(size < 0 || size > MAX_SIZE)
+			throw new IllegalArgumentException("Graph size must be between 0 and "+MAX_SIZE+": "+size);
+		if(setCliqueSize < 2 || unsetCliqueSize < 2 || setCliqueSize > MAX_SIZE || unsetCliqueSize > MAX_SIZE)
+			throw new IllegalArgumentException("Clique sizes must be between 2 and "+MAX_SIZE+": "+setCliqueSize+","+unsetCliqueSize);
 		this.size = size;
+		this.setCliqueSize = setCliqueSize;
+		this.unsetCliqueSize = unsetCliqueSize;
 		this.id = UUID.randomUUID();
-		matrix = new BitSet(size*size);
+		rows = new long[size];
 	}
 	
 	/**
@@ -53,7 +119,7 @@ public class Graph implements Comparable<Graph>, Serializable{
 		this.solved = solved;
 		for(int i=0; i <graph.length(); i++){
 			if(graph.charAt(i) == '1')
-				matrix.set(i);	
+				set(i/size, i%size, true);	
 		}
 	}
 	
@@ -62,16 +128,13 @@ public class Graph implements Comparable<Graph>, Serializable{
 	 * @param toCopy
 	 */
 	public Graph (Graph toCopy) {
-		this(toCopy.size());
+		this(toCopy.size(), toCopy.setCliqueSize, toCopy.unsetCliqueSize);
 		this.id = toCopy.id;
 		this.originId = toCopy.originId;
 		this.solved = toCopy.solved;
 		this.assigned = toCopy.assigned;
-		for(int row=0; row < size; row++) {
-			for(int col=0; col < size; col++) {
-				set(row, col, toCopy.get(row,col));
-			}
-		}
+		this.canonical = toCopy.canonical;
+		System.arraycopy(toCopy.rows(), 0, rows, 0, size);
 	}
 	
 	/**
@@ -82,45 +145,105 @@ public class Graph implements Comparable<Graph>, Serializable{
 		return size;
 	}
 
+	/**
+	 * Get size of cliques counted among edges of a color
+	 * @param value color of edges
+	 * @return clique size (s for color 1, t for color 0)
+	 */
+	public int cliqueSize(boolean value){
+		return value ? setCliqueSize : unsetCliqueSize;
+	}
+	
+	/**
+	 * Do both colors have the same clique size (so swapping the colors keeps a counterexample one)
+	 * @return true if symmetric
+	 */
+	public boolean isSymmetric(){
+		return setCliqueSize == unsetCliqueSize;
+	}
+
 	/**
 	 * Get value of matrix represented edge
+	 * (the matrix is symmetric, the diagonal is always 0)
 	 * @param row 
 	 * @param col
 	 * @return value
 	 */
 	public boolean get(int row, int col) { 
-		return matrix.get( (size*row)+col);
+		return (rows()[row] & (1L << col)) != 0;
 	}
 
 	/**
-	 * Set value of edge
+	 * Set value of edge (setting the diagonal has no effect)
 	 * @param row
 	 * @param col
 	 * @param value
 	 */
 	public void set(int row, int col, boolean value) { 
-		if(value)
-			matrix.set( (size*row)+col);
-		else
-			matrix.clear( (size*row)+col);
+		setEdge(row, col, value);
+	}
+	
+	/**
+	 * Set value of a single edge, even in subclasses that tie edges together
+	 * (setting the diagonal has no effect)
+	 * @param row
+	 * @param col
+	 * @param value
+	 */
+	protected final void setEdge(int row, int col, boolean value) { 
+		if(row == col) return;
+		long[] rows = modifiableRows();
+		if(value) {
+			rows[row] |= 1L << col;
+			rows[col] |= 1L << row;
+		}
+		else {
+			rows[row] &= ~(1L << col);
+			rows[col] &= ~(1L << row);
+		}
 	}
 	
 	/**
-	 * Flip value of edge
+	 * Flip value of edge (flipping the diagonal has no effect)
 	 * @param row
 	 * @param col
 	 */
 	public void flip(int row, int col) { 
-		matrix.flip( (size*row)+col);
+		if(row == col) return;
+		long[] rows = modifiableRows();
+		rows[row] ^= 1L << col;
+		rows[col] ^= 1L << row;
+	}
+	
+	/**
+	 * Get all neighbors of a node connected by edges of a given value
+	 * @param node id
+	 * @param value of edges
+	 * @return bit mask with bit k set if edge (node,k) has the value
+	 */
+	public long neighborMask(int node, boolean value) {
+		long[] rows = rows();
+		return value ? rows[node] : ~rows[node] & allNodes() & ~(1L << node);
 	}
 	
 	/**
 	 * Flip a random edge (in the upper triangle)
+	 * @return the flipped edge encoded as row*size+col
 	 */
-	public void flipRandom(){
+	public int flipRandom(){
+		return flipRandom(threadRandom.get());
+	}
+	
+	/**
+	 * Flip a random edge (in the upper triangle)
+	 * @param rnd source of randomness (seeded for reproducible searches)
+	 * @return the flipped edge encoded as row*size+col
+	 */
+	public int flipRandom(SplittableRandom rnd){
 		int row = rnd.nextInt(size-1);
 		int col = row + 1+ rnd.nextInt(size-row-1);
 		flip(row,col);
+		return row*size+col;
 	}
 	
 	/**
@@ -128,38 +251,53 @@ public class Graph implements Comparable<Graph>, Serializable{
 	 * @return clique count
 	 */
 	public int cliqueCount() {
-	    int count=0;
-	    
-	    for(int i=0;i < size-SUB_GRAPH_SIZE+1; i++) {
-	    	for(int j=i+1;j < size-SUB_GRAPH_SIZE+2; j++) {
-	    		
-	    		boolean value_i_j = get(i,j);
-	    		
-	    		for(int k=j+1;k < size-SUB_GRAPH_SIZE+3; k++) { 
-	    			if( value_i_j == get(i,k)  && 
-	    				value_i_j == get(j,k) )
-	    			{
-	    				for(int l=k+1;l < size-SUB_GRAPH_SIZE+4; l++) { 
-							if(value_i_j == get(i,l) && 
-							   value_i_j == get(j,l) && 
-							   value_i_j == get(k,l) )
-							{
-								for(int m=l+1;m < size-SUB_GRAPH_SIZE+5; m++)  {
-									if(value_i_j == get(i,m) && 
-									   value_i_j == get(j,m) &&
-									   value_i_j == get(k,m) && 
-									   value_i_j == get(l,m) )
-									{
-                                        count++;
-									}
-								}
-							}
-	    				}
-	    			}
-	    		}
-	         }
-	     }
-	    return count;
+		return cliqueCount(true) + cliqueCount(false);
+	}
+	
+	/**
+	 * Get clique count using all cores (via the common ForkJoinPool).
+	 * Work is split by the smallest node of each clique, in ranges of equal estimated work.
+	 * Graphs smaller than PARALLEL_COUNT_SIZE are counted sequentially.
+	 * @return clique count
+	 */
+	public int cliqueCountParallel() {
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		if(size < PARALLEL_COUNT_SIZE || pool.getParallelism() < 2)
+			return cliqueCount();
+		
+		//work of smallest node i ~ number of 4-subsets of nodes after it
+		long[] work = new long[size+1];
+		for(int i=0; i < size; i++) {
+			long after = size-i-1;
+			work[i+1] = work[i] + after*(after-1)*(after-2)*(after-3)/24;
+		}
+		long grain = Math.max(1, work[size] / (pool.getParallelism() * PARALLEL_SPLITS_PER_THREAD));
+		
+		rows(); //unpack before sharing between threads
+		return pool.invoke(new CliqueCountTask(this, work, 0, size, grain));
+	}
+	
+	/**
+	 * Get number of monochromatic cliques that contain the edge (i,j) in its current color
+	 * @param i node of edge
+	 * @param j other node of edge
+	 * @return clique count through the edge
+	 */
+	public int cliqueCountContaining(int i, int j) {
+		return cliqueCountContaining(i, j, get(i,j));
+	}
+	
+	/**
+	 * Get the change in clique count that flipping the edge (i,j) would cause.
+	 * Only the cliques through the edge are counted, so this is much cheaper
+	 * than flipping and calling cliqueCount() twice. The graph is not modified.
+	 * @param i node of edge
+	 * @param j other node of edge
+	 * @return cliqueCount() after the flip minus cliqueCount() before it
+	 */
+	public int flipDelta(int i, int j) {
+		boolean value = get(i,j);
+		return cliqueCountContaining(i, j, !value) - cliqueCountContaining(i, j, value);
 	}
 	
 	/**
@@ -168,17 +306,7 @@ public class Graph implements Comparable<Graph>, Serializable{
 	 * @return number of neighbors
 	 */
 	public int countNeighbors(int node){
-		int neighbors = 0;
-		
-		for(int i=node+1; i<size; i++){
-			if( get(node,i) ) 
-				neighbors++;
-		}
-		for(int i=0; i< node; i++){
-			if( get(i,node) ) 
-				neighbors++;
-		}
-		return neighbors;
+		return Long.bitCount(rows()[node]);
 	}
 	
 	/**
@@ -188,13 +316,9 @@ public class Graph implements Comparable<Graph>, Serializable{
 	 */
 	public Graph extend(){
 		int newSize = size +1;
-		Graph graph = new Graph(newSize);
+		Graph graph = new Graph(newSize, setCliqueSize, unsetCliqueSize);
 		graph.originId = this.id;
-		for(int row=0; row < size; row++) {
-			for(int col=0; col < size; col++) {
-				graph.set(row, col, get(row,col));
-			}
-		}
+		System.arraycopy(rows(), 0, graph.rows, 0, size);
 		
 		return graph;
 	}
@@ -205,6 +329,16 @@ public class Graph implements Comparable<Graph>, Serializable{
 	 * @return extended graph
 	 */
 	public Graph extendRandom(){
+		return extendRandom(threadRandom.get());
+	}
+	
+	/**
+	 * Extend the graph by adding a node (increasing the size by 1).
+	 * The new edges are filled with random values.
+	 * @param rnd source of randomness (seeded for reproducible searches)
+	 * @return extended graph
+	 */
+	public Graph extendRandom(SplittableRandom rnd){
 		Graph graph = extend();
 		
 		for(int row=0; row < graph.size()-1; row++) {
@@ -216,32 +350,76 @@ public class Graph implements Comparable<Graph>, Serializable{
 
 	/**
 	 * Checks to see if this graph is IsoMorph of another graph
+	 * (or of the other graph with inverted edges, if the clique sizes are symmetric)
 	 * @param o graph to check against
 	 * @return true if isomorph
 	 */
 	public boolean isIsomorphOf(Graph o){
-		//TODO: IMPLEMENT ISOMORPHIC CHECKING
-		return this.equals(o);
+		return size == o.size && setCliqueSize == o.setCliqueSize && unsetCliqueSize == o.unsetCliqueSize 
+				&& canonicalForm().equals(o.canonicalForm());
+	}
+	
+	/**
+	 * Get hash of cheap isomorphism invariants: per node and per color the degree, 
+	 * the number of triangles and the number of 4-cliques the node is in.
+	 * Isomorphic graphs (including inverted ones, if clique sizes are symmetric) always have the same hash,
+	 * so only graphs with equal hashes need a full isomorphism check.
+	 * @return invariant hash
+	 */
+	public long invariantHash(){
+		long[] direct = new long[size];
+		long[] inverted = new long[size];
+		
+		for(int node=0; node < size; node++) {
+			long one = nodeInvariant(node, true);
+			long zero = nodeInvariant(node, false);
+			direct[node] = (one << 32) | zero;
+			inverted[node] = (zero << 32) | one;
+		}
+		Arrays.sort(direct);
+		Arrays.sort(inverted);
+		
+		long a = size, b = size;
+		for(int i=0; i < size; i++) {
+			a = (a ^ direct[i]) * 0x9E3779B97F4A7C15L;
+			a ^= a >>> 29;
+			b = (b ^ inverted[i]) * 0x9E3779B97F4A7C15L;
+			b ^= b >>> 29;
+		}
+		return isSymmetric() ? Math.min(a, b) : a;
+	}
+	
+	/**
+	 * Get canonical labeling of this graph (computed once, until graph is modified)
+	 * @return canonical form
+	 */
+	public CanonicalForm canonicalForm(){
+		CanonicalForm form = canonical;
+		if(form == null)
+			canonical = form = CanonicalForm.of(this);
+		return form;
 	}
 		
 	/**
 	 * Invert all edges 1 <-> 0
 	 */
 	public void invert(){
-		matrix.flip(0, matrix.size());
+		long[] rows = modifiableRows();
+		for(int node=0; node < size; node++)
+			rows[node] = ~rows[node] & allNodes() & ~(1L << node);
 	}
 	
 	/**
-	 * Mirror matrix and set dominant value to zero
-	 * @return
+	 * Copy graph and set dominant value to zero
+	 * (only if the clique sizes are symmetric, as inverting would otherwise change the problem)
+	 * @return normalized copy
 	 */
 	public Graph normalize(){
 		Graph graph = new Graph(this);
-		graph.mirror();
 		
 		//Dominant value 1 then invert
-		if( dominantValue())
-			invert();
+		if( isSymmetric() && dominantValue())
+			graph.invert();
 		
 		return graph;
 	}
@@ -251,13 +429,27 @@ public class Graph implements Comparable<Graph>, Serializable{
 	 * @return string
 	 */
 	public String encodeAsJsonValue(){		
-		String out ="";
-		for(int i=0; i < size*size; i++) {
-			out+=  matrix.get(i)?1:0 ;
+		StringBuilder out = new StringBuilder(size*size);
+		for(int row=0; row < size; row++) {
+			for(int col=0; col < size; col++) {
+				out.append( get(row,col)?1:0 );
+			}
 		}
-		return out;
+		return out.toString();
 	}	
 	
+	/**
+	 * Release the row masks and keep only the packed upper triangle.
+	 * Useful for graphs that are stored rather than searched on.
+	 * The rows are rebuilt when next needed.
+	 */
+	public void compact(){
+		if(packed == null)
+			packed = pack(rows());
+		rows = null;
+		canonical = null;
+	}
+	
 	public void assign()		{ 
 		assigned = true;
 		numTimesAssigned++;
@@ -284,29 +476,299 @@ public class Graph implements Comparable<Graph>, Serializable{
 	 * 			false if 0 is most common edge
 	 */
 	private boolean dominantValue(){
-		int numSet = matrix.cardinality();
-		int numUnset = matrix.size() - numSet;
+		int numSet = numSetEdges();
+		int numUnset = size*(size-1)/2 - numSet;
 	
 		return numSet > numUnset;
 	}
 	
 	/**
-	 * Mirror upper triangle to lower triangle
-	 * @return mirrored graph
+	 * Number of edges with value 1
+	 * @return edge count
 	 */
-	private void mirror(){
-		for(int row=0; row < size; row++) {
-			for(int col=row+1; col < size; col++) {
-				if(get(row, col)) {
-					set(row,col, true);
-					set(col,row, true);
-				}
+	private int numSetEdges(){
+		int count = 0;
+		for(long row: rows())
+			count += Long.bitCount(row);
+		return count/2;
+	}
+	
+	/**
+	 * Mask with a bit set for every node in the graph
+	 * @return the mask
+	 */
+	private long allNodes(){
+		return size == MAX_SIZE ? -1L : (1L << size) - 1;
+	}
+	
+	/**
+	 * Count all cliques of a given color
+	 * @param value color of cliques to count
+	 * @return number of cliques
+	 */
+	private int cliqueCount(boolean value) {
+		int count = 0;
+		for(int i=0; i < size; i++)
+			count += cliqueCountFrom(i, value);
+		return count;
+	}
+	
+	/**
+	 * Count cliques of a given color whose smallest node is i
+	 * @param i smallest node
+	 * @param value color of cliques to count
+	 * @return number of cliques
+	 */
+	private int cliqueCountFrom(int i, boolean value) {
+		return cliqueCountWithin(neighborMask(i, value) & above(i), cliqueSize(value)-1, value);
+	}
+	
+	/**
+	 * Count cliques of a given color that contain the edge (i,j),
+	 * treating the edge itself as having that color
+	 * @param i node of edge
+	 * @param j other node of edge
+	 * @param value color of cliques to count
+	 * @return number of cliques
+	 */
+	private int cliqueCountContaining(int i, int j, boolean value) {
+		return cliqueCountWithin(neighborMask(i, value) & neighborMask(j, value), cliqueSize(value)-2, value);
+	}
+	
+	/**
+	 * Count cliques of a given size and color whose nodes are all within a mask.
+	 * Sizes up to 4 (the inner loops of counting K5s) have dedicated loops,
+	 * larger ones pick a smallest node and recurse on its neighbors after it.
+	 * @param nodes mask of candidate nodes
+	 * @param cliqueSize number of nodes in a clique
+	 * @param value color of clique edges
+	 * @return number of cliques
+	 */
+	private int cliqueCountWithin(long nodes, int cliqueSize, boolean value) {
+		int count = 0;
+		switch(cliqueSize) {
+		case 0:
+			return 1;
+		case 1:
+			return Long.bitCount(nodes);
+		case 2:
+			for(long ks = nodes; ks != 0; ks &= ks-1) {
+				int k = Long.numberOfTrailingZeros(ks);
+				count += Long.bitCount(nodes & neighborMask(k, value) & above(k));
+			}
+			return count;
+		case 3:
+			return triangleCount(nodes, value);
+		case 4:
+			for(long js = nodes; js != 0; js &= js-1) {
+				int j = Long.numberOfTrailingZeros(js);
+				count += triangleCount(nodes & neighborMask(j, value) & above(j), value);
+			}
+			return count;
+		default:
+			for(long js = nodes; js != 0; js &= js-1) {
+				int j = Long.numberOfTrailingZeros(js);
+				count += cliqueCountWithin(nodes & neighborMask(j, value) & above(j), cliqueSize-1, value);
 			}
+			return count;
 		}
 	}
 	
+	/**
+	 * Count triangles of a given color whose nodes are all within a mask
+	 * @param nodes mask of candidate nodes
+	 * @param value color of triangle edges
+	 * @return number of triangles
+	 */
+	private int triangleCount(long nodes, boolean value) {
+		int count = 0;
+		for(long ks = nodes; ks != 0; ks &= ks-1) {
+			int k = Long.numberOfTrailingZeros(ks);
+			long nk = nodes & neighborMask(k, value) & above(k);
+			
+			for(long ls = nk; ls != 0; ls &= ls-1) {
+				int l = Long.numberOfTrailingZeros(ls);
+				count += Long.bitCount(nk & neighborMask(l, value) & above(l));
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Degree, triangle count and 4-clique count of a node in one color, packed in 32 bits
+	 * @param node id
+	 * @param value color
+	 * @return packed invariant
+	 */
+	private long nodeInvariant(int node, boolean value) {
+		long neighbors = neighborMask(node, value);
+		int triangles = 0;
+		for(long ks = neighbors; ks != 0; ks &= ks-1) {
+			int k = Long.numberOfTrailingZeros(ks);
+			triangles += Long.bitCount(neighbors & neighborMask(k, value) & above(k));
+		}
+		int k4s = triangleCount(neighbors, value);
+		
+		return ((long)Long.bitCount(neighbors) << 26) | ((long)Math.min(triangles, 0x7FF) << 15) | Math.min(k4s, 0x7FFF);
+	}
+	
+	/**
+	 * Get row masks, unpacking them if the graph was compacted
+	 * @return row masks
+	 */
+	private long[] rows(){
+		long[] r = rows;
+		if(r == null)
+			rows = r = unpack(packed, size);
+		return r;
+	}
+	
+	/**
+	 * Get row masks for modification (drops packed copy and cached canonical form)
+	 * @return row masks
+	 */
+	private long[] modifiableRows(){
+		long[] r = rows();
+		packed = null;
+		canonical = null;
+		return r;
+	}
+	
+	/**
+	 * Pack upper triangle of row masks, row after row, into n(n-1)/2 bits
+	 * @param rows masks
+	 * @return packed bits
+	 */
+	private static long[] pack(long[] rows){
+		int size = rows.length;
+		long[] bits = new long[(size*(size-1)/2 + 63) / 64];
+		int pos = 0;
+		for(int row=0; row < size-1; row++) {
+			int count = size-row-1;
+			long value = rows[row] >>> (row+1);
+			bits[pos >>> 6] |= value << pos;
+			int free = 64 - (pos & 63);
+			if(count > free)
+				bits[(pos >>> 6) + 1] |= value >>> free;
+			pos += count;
+		}
+		return bits;
+	}
+	
+	/**
+	 * Rebuild symmetric row masks from packed upper triangle
+	 * @param bits packed upper triangle
+	 * @param size of graph
+	 * @return row masks
+	 */
+	private static long[] unpack(long[] bits, int size){
+		long[] rows = new long[size];
+		int pos = 0;
+		for(int row=0; row < size-1; row++) {
+			int count = size-row-1;
+			long value = bits[pos >>> 6] >>> pos;
+			int free = 64 - (pos & 63);
+			if(count > free)
+				value |= bits[(pos >>> 6) + 1] << free;
+			value &= -1L >>> (64-count);
+			pos += count;
+			
+			rows[row] |= value << (row+1);
+			for(long cols = value; cols != 0; cols &= cols-1)
+				rows[row + 1 + Long.numberOfTrailingZeros(cols)] |= 1L << row;
+		}
+		return rows;
+	}
+	
+	/**
+	 * Write graph in its compact binary form: size, flags, ids, clique sizes (unless default),
+	 * counters and the packed upper triangle (this is also how the graph is serialized)
+	 * @param out to write to
+	 * @throws IOException
+	 */
+	public void writeTo(DataOutput out) throws IOException {
+		out.writeByte(size);
+		boolean customCliques = setCliqueSize != DEFAULT_CLIQUE_SIZE || unsetCliqueSize != DEFAULT_CLIQUE_SIZE;
+		out.writeByte((solved?1:0) | (originId!=null?2:0) | (customCliques?4:0));
+		out.writeLong(id.getMostSignificantBits());
+		out.writeLong(id.getLeastSignificantBits());
+		if(originId != null) {
+			out.writeLong(originId.getMostSignificantBits());
+			out.writeLong(originId.getLeastSignificantBits());
+		}
+		if(customCliques) {
+			out.writeByte(setCliqueSize);
+			out.writeByte(unsetCliqueSize);
+		}
+		out.writeInt(numTimesAssigned);
+		out.writeInt(numFailedToFindSolution);
+		
+		long[] bits = packed != null ? packed : pack(rows());
+		for(long word: bits)
+			out.writeLong(word);
+	}
+	
+	/**
+	 * Read a graph written by writeTo() (the graph is compacted)
+	 * @param in to read from
+	 * @return the graph
+	 * @throws IOException
+	 */
+	public static Graph readFrom(DataInput in) throws IOException {
+		Graph graph = new Graph(0);
+		graph.readFields(in);
+		return graph;
+	}
+	
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		writeTo(out);
+	}
+	
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		readFields(in);
+	}
+	
+	/**
+	 * Replace all state of this graph with a graph written by writeTo()
+	 * @param in to read from
+	 * @throws IOException
+	 */
+	private void readFields(DataInput in) throws IOException {
+		size = in.readUnsignedByte();
+		if(size > MAX_SIZE)
+			throw new IOException("Graph size must be at most "+MAX_SIZE+": "+size);
+		int flags = in.readByte();
+		solved = (flags & 1) != 0;
+		id = new UUID(in.readLong(), in.readLong());
+		if((flags & 2) != 0)
+			originId = new UUID(in.readLong(), in.readLong());
+		setCliqueSize = unsetCliqueSize = DEFAULT_CLIQUE_SIZE;
+		if((flags & 4) != 0) {
+			setCliqueSize = in.readUnsignedByte();
+			unsetCliqueSize = in.readUnsignedByte();
+		}
+		numTimesAssigned = in.readInt();
+		numFailedToFindSolution = in.readInt();
+		
+		rows = null;
+		packed = new long[(size*(size-1)/2 + 63) / 64];
+		for(int i=0; i < packed.length; i++)
+			packed[i] = in.readLong();
+	}
+	
+	/**
+	 * Mask of all nodes with a greater id than given node
+	 * @param node id
+	 * @return the mask
+	 */
+	private static long above(int node){
+		return -2L << node;
+	}
+	
 	public String asPrettyTable() {		
-		String out ="Graph ("+size+") "+matrix.cardinality()+"/"+matrix.size()+"\n";
+		String out ="Graph ("+size+") "+(2*numSetEdges())+"/"+(size*size)+"\n";
 		for(int row=0; row < size; row++) {
 			out += " |";
 			for(int col=0; col < size; col++)
@@ -328,38 +790,111 @@ public class Graph implements Comparable<Graph>, Serializable{
 	
 	@Override
 	public boolean equals(Object obj) {
-		return matrix.equals( ((Graph)obj).matrix );
+		return Arrays.equals(rows(), ((Graph)obj).rows() );
+	}
+	
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(rows());
 	}
 
 	@Override
 	public int compareTo(Graph o) {
-		BitSet a = this.matrix;
-		BitSet b = o.matrix;
+		if(size != o.size) 
+			return size > o.size ? 1 : -1;
 		
-		if(a.equals(b)) {
-            return 0;
-        } else if(a.length() > b.length()) {
-            return 1;
-        } else if(b.length() > a.length()) {
-            return -1;
-        } else {
-            for(int i = 0; i < a.length(); i++) {
-               if(a.get(i) != b.get(i)) {
-                   if(a.get(i)) {
-                      return 1;
-                   } else {
-                      return -1;
-                   }
-                }
-             }
-             return 0;
-         }
+		for(int row = 0; row < size; row++) {
+			long diff = rows()[row] ^ o.rows()[row];
+			if(diff != 0) {
+				//first differing edge decides
+				return (rows()[row] & Long.lowestOneBit(diff)) != 0 ? 1 : -1;
+			}
+		}
+		return 0;
 	}
 	
 	@Override
 	protected Object clone() throws CloneNotSupportedException {
 		return new Graph(this);
 	}
+
+	/**
+	 * A graph serialized before the row masks, when the adjacency matrix was a BitSet.
+	 * Has the fields of the old Graph, and is replaced by a Graph when read
+	 * (see LegacyGraphInputStream)
+	 */
+	static class LegacyForm implements Serializable {
+
+		/** serialVersionUID of the old Graph */
+		static final long serialVersionUID = 5253025260499448857L;
+
+		private boolean solved;
+		private UUID id;
+		private UUID originId;
+		private int numTimesAssigned;
+		private int numFailedToFindSolution;
+		private BitSet matrix;
+		private int size;
+
+		private Object readResolve() throws ObjectStreamException {
+			if(size < 0 || size > MAX_SIZE || matrix == null || id == null)
+				throw new InvalidObjectException("Graph can not be converted from old layout: size "+size);
+
+			Graph graph = new Graph(size);
+			graph.solved = solved;
+			graph.id = id;
+			graph.originId = originId;
+			graph.numTimesAssigned = numTimesAssigned;
+			graph.numFailedToFindSolution = numFailedToFindSolution;
+			for(int row=0; row < size; row++)
+				for(int col=row+1; col < size; col++)
+					if(matrix.get(size*row+col)) graph.set(row, col, true);
+			graph.compact();
+			return graph;
+		}
+	}
+
+	/**
+	 * Counts cliques whose smallest node is in a range, 
+	 * splitting the range in two halves of equal work until it is small enough
+	 */
+	private static class CliqueCountTask extends RecursiveTask<Integer> {
+		
+		private static final long serialVersionUID = 2287402470434335271L;
+		
+		private final Graph graph;
+		private final long[] work;
+		private final int from, to;
+		private final long grain;
+		
+		CliqueCountTask(Graph graph, long[] work, int from, int to, long grain) {
+			this.graph = graph;
+			this.work = work;
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+		}
+		
+		@Override
+		protected Integer compute() {
+			if(to-from <= 1 || work[to]-work[from] <= grain) {
+				int count = 0;
+				for(int i=from; i < to; i++)
+					count += graph.cliqueCountFrom(i, true) + graph.cliqueCountFrom(i, false);
+				return count;
+			}
+			
+			//split where half of the work is done
+			long half = (work[from] + work[to]) / 2;
+			int mid = from+1;
+			while(mid < to-1 && work[mid+1] <= half) mid++;
+			
+			CliqueCountTask left = new CliqueCountTask(graph, work, from, mid, grain);
+			left.fork();
+			int right = new CliqueCountTask(graph, work, mid, to, grain).compute();
+			return left.join() + right;
+		}
+	}
 	
 	//--------------------------------------------------------
 	//					Static Methods
@@ -371,7 +906,30 @@ public class Graph implements Comparable<Graph>, Serializable{
 	 * @return generated graph
 	 */
 	public static Graph generateRandom(int size){
-		Graph g = new Graph(size);
+		return generateRandom(size, DEFAULT_CLIQUE_SIZE, DEFAULT_CLIQUE_SIZE);
+	}
+	
+	/**
+	 * Generate random graph as upper triangular matrix for an R(s,t) search
+	 * @param size of graph to generate
+	 * @param setCliqueSize size of cliques counted among edges of color 1 (s)
+	 * @param unsetCliqueSize size of cliques counted among edges of color 0 (t)
+	 * @return generated graph
+	 */
+	public static Graph generateRandom(int size, int setCliqueSize, int unsetCliqueSize){
+		return generateRandom(size, setCliqueSize, unsetCliqueSize, threadRandom.get());
+	}
+	
+	/**
+	 * Generate random graph as upper triangular matrix for an R(s,t) search
+	 * @param size of graph to generate
+	 * @param setCliqueSize size of cliques counted among edges of color 1 (s)
+	 * @param unsetCliqueSize size of cliques counted among edges of color 0 (t)
+	 * @param rnd source of randomness (seeded for reproducible searches)
+	 * @return generated graph
+	 */
+	public static Graph generateRandom(int size, int setCliqueSize, int unsetCliqueSize, SplittableRandom rnd){
+		Graph g = new Graph(size, setCliqueSize, unsetCliqueSize);
 		
 		for(int row=0; row < size; row++) {
 			for(int col=row+1; col < size; col++) {
@@ -0,0 +1,251 @@
+package ramsey;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A read only bank file of graphs, that is memory mapped instead of read,
+ * so a store can open it instantly and turn records into graphs only when it needs them.
+ *
+ * The file starts with a header that indexes one segment per graph size (size, count, record width, offset),
+ * and every segment is an array of fixed width records: the graph's compact binary form (Graph.writeTo()),
+ * padded to the largest form of its size. So the n-th graph of a size (and its id, at a fixed offset)
+ * is found without reading any other record. When the bank is opened, the ids are read into
+ * an index, so a graph is found by its id without turning any record into a graph.
+ *
+ * @author Michael Nekrasov
+ * @author Roman Kazarin
+ *
+ */
+public class GraphBank {
+
+	private static final int MAGIC = 0x52424E4B; //"RBNK"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 12;
+	private static final int SEGMENT_ENTRY_SIZE = 20;
+
+	/** Position of the id in a record (after the size and flag bytes) */
+	private static final int ID_OFFSET = 2;
+
+	private final int[] counts;
+	private final int[] widths;
+	private final MappedByteBuffer[] segments;
+	private final Map<UUID, Long> positions = new HashMap<UUID, Long>();
+
+	private GraphBank(int[] counts, int[] widths, MappedByteBuffer[] segments) {
+		this.counts = counts;
+		this.widths = widths;
+		this.segments = segments;
+		for(int size=0; size < counts.length; size++)
+			for(int index=0; index < counts[size]; index++)
+				positions.put(id(size, index), ((long) size << 32) | index);
+	}
+
+	/**
+	 * Map a bank file (only the header and the ids of the records are read)
+	 * @param file to open
+	 * @return the bank, or null if the file is not a bank file
+	 * @throws IOException if the file could not be read
+	 */
+	public static GraphBank open(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			if(raf.length() < HEADER_SIZE || raf.readInt() != MAGIC) return null;
+			if(raf.readInt() != VERSION)
+				throw new IOException("Unsupported bank version");
+
+			int numSegments = raf.readInt();
+			int[] counts = new int[Graph.MAX_SIZE+1];
+			int[] widths = new int[Graph.MAX_SIZE+1];
+			MappedByteBuffer[] segments = new MappedByteBuffer[Graph.MAX_SIZE+1];
+
+			FileChannel channel = raf.getChannel();
+			for(int s=0; s < numSegments; s++) {
+				raf.seek(HEADER_SIZE + (long) s*SEGMENT_ENTRY_SIZE);
+				int size = raf.readInt();
+				int count = raf.readInt();
+				int width = raf.readInt();
+				long offset = raf.readLong();
+				if(size < 0 || size > Graph.MAX_SIZE || width != recordWidth(size) || offset + (long) count*width > raf.length())
+					throw new IOException("Corrupt bank segment for size "+size);
+
+				counts[size] = count;
+				widths[size] = width;
+				segments[size] = channel.map(FileChannel.MapMode.READ_ONLY, offset, (long) count*width);
+			}
+			return new GraphBank(counts, widths, segments);
+		}
+		finally {
+			//mappings stay valid after the file is closed
+			raf.close();
+		}
+	}
+
+	/**
+	 * Get number of graphs of a size
+	 * @param size of graphs
+	 * @return number of graphs
+	 */
+	public int count(int size) {
+		return size < counts.length ? counts[size] : 0;
+	}
+
+	/**
+	 * Turn a record into a graph
+	 * @param size of graph
+	 * @param index of graph among graphs of its size
+	 * @return the graph (compacted)
+	 * @throws IOException if the record is corrupt
+	 */
+	public Graph read(int size, int index) throws IOException {
+		return Graph.readFrom(new DataInputStream(new ByteArrayInputStream(record(size, index))));
+	}
+
+	/**
+	 * Get id of a graph, without turning its record into a graph
+	 * @param size of graph
+	 * @param index of graph among graphs of its size
+	 * @return id of graph
+	 */
+	public UUID id(int size, int index) {
+		ByteBuffer segment = segments[size];
+		int position = index*widths[size] + ID_OFFSET;
+		return new UUID(segment.getLong(position), segment.getLong(position+8));
+	}
+
+	/**
+	 * Find a graph by its id, without reading any record
+	 * @param graphId id of graph
+	 * @return size of the graph in the upper, and its index among graphs of its size in the lower 32 bits
+	 * 			(see sizeAt() and indexAt()), or -1 if it is not in the bank
+	 */
+	public long find(UUID graphId) {
+		Long position = positions.get(graphId);
+		return position == null ? -1 : position;
+	}
+
+	/**
+	 * Get size of graph from its position
+	 * @param position of graph (from find())
+	 * @return size of graph
+	 */
+	public static int sizeAt(long position) {
+		return (int) (position >>> 32);
+	}
+
+	/**
+	 * Get index of graph among graphs of its size from its position
+	 * @param position of graph (from find())
+	 * @return index of graph
+	 */
+	public static int indexAt(long position) {
+		return (int) position;
+	}
+
+	/**
+	 * Write a bank file
+	 * @param file to write (and force to disk)
+	 * @param graphs to write, by size
+	 * @param base bank whose records are copied too (or null)
+	 * @param baseFrom index of the first record of every size to copy from the base (or null if no base)
+	 * @throws IOException
+	 */
+	public static void write(File file, List<Graph>[] graphs, GraphBank base, int[] baseFrom) throws IOException {
+		int[] counts = new int[Graph.MAX_SIZE+1];
+		int numSegments = 0;
+		for(int size=0; size <= Graph.MAX_SIZE; size++) {
+			if(size < graphs.length && graphs[size] != null)
+				counts[size] += graphs[size].size();
+			if(base != null)
+				counts[size] += Math.max(0, base.count(size) - from(baseFrom, size));
+			if(counts[size] > 0) numSegments++;
+		}
+
+		FileOutputStream stream = new FileOutputStream(file);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(numSegments);
+
+			long offset = HEADER_SIZE + (long) numSegments*SEGMENT_ENTRY_SIZE;
+			for(int size=0; size <= Graph.MAX_SIZE; size++) {
+				if(counts[size] == 0) continue;
+				out.writeInt(size);
+				out.writeInt(counts[size]);
+				out.writeInt(recordWidth(size));
+				out.writeLong(offset);
+				offset += (long) counts[size]*recordWidth(size);
+			}
+
+			for(int size=0; size <= Graph.MAX_SIZE; size++) {
+				if(size < graphs.length && graphs[size] != null) {
+					for(Graph graph: graphs[size]) {
+						ByteArrayOutputStream bytes = new ByteArrayOutputStream(recordWidth(size));
+						graph.writeTo(new DataOutputStream(bytes));
+						out.write(bytes.toByteArray());
+						out.write(new byte[recordWidth(size) - bytes.size()]);
+					}
+				}
+				if(base != null) {
+					for(int index=from(baseFrom, size); index < base.count(size); index++)
+						out.write(base.record(size, index));
+				}
+			}
+			out.flush();
+			stream.getFD().sync();
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	//--------------------------------------------------------
+	//					Private Methods
+	//--------------------------------------------------------
+
+	/**
+	 * Copy a record out of its segment
+	 * @param size of graph
+	 * @param index of graph among graphs of its size
+	 * @return the record
+	 */
+	private byte[] record(int size, int index) {
+		byte[] record = new byte[widths[size]];
+		ByteBuffer segment = segments[size].duplicate();
+		segment.position(index*widths[size]);
+		segment.get(record);
+		return record;
+	}
+
+	/**
+	 * Index of the first record of a size to copy (sizes beyond the array are copied whole)
+	 */
+	private static int from(int[] baseFrom, int size) {
+		return size < baseFrom.length ? baseFrom[size] : 0;
+	}
+	
+	/**
+	 * Width of the largest binary form of a graph of given size:
+	 * size, flags, two ids, clique sizes, counters and the packed upper triangle
+	 * @param size of graph
+	 * @return number of bytes
+	 */
+	private static int recordWidth(int size) {
+		return 2 + 32 + 2 + 8 + 8*((size*(size-1)/2 + 63) / 64);
+	}
+}
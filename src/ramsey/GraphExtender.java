@@ -0,0 +1,243 @@
+package ramsey;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Extends a graph by one node, choosing the colors of the new edges so that
+ * as few new monochromatic cliques as possible are created.
+ *
+ * A new node creates a clique of a color exactly where its edges of that color
+ * reach all nodes of a one node smaller clique of that color (a 4-clique for R(5,5)).
+ * So these smaller cliques of the base graph are found once
+ * (as node masks), and then the edges of the new node are colored one by one in a backtracking search,
+ * that cuts off every branch that already created as many cliques as the best coloring found.
+ * Nodes in many of them are colored first, so cliques are completed (and branches cut) early.
+ *
+ * The search stops at the first clique free extension, or after a limit of visited search nodes
+ * (in which case the best coloring seen is used).
+ *
+ * @author Michael Nekrasov
+ * @author Roman Kazarin
+ *
+ */
+public class GraphExtender {
+
+	public static final long DEFAULT_NODE_LIMIT = 1000000;
+
+	private final Graph base;
+	private final int size;
+	private final long nodeLimit;
+	private final SplittableRandom rnd;
+
+	/** Order in which the edges to the new node are colored */
+	private final int[] order;
+
+	/** One node smaller cliques (as node masks) of each color, grouped by the depth at which their last node is colored */
+	private final long[][] setCliques, unsetCliques;
+
+	private long visited;
+	private int bestCount;
+	private long bestSetEdges;
+
+	/**
+	 * Prepare to extend a graph (finds all its one node smaller cliques)
+	 * @param base graph to extend
+	 */
+	public GraphExtender(Graph base) {
+		this(base, DEFAULT_NODE_LIMIT, new SplittableRandom());
+	}
+
+	/**
+	 * Prepare to extend a graph (finds all its one node smaller cliques)
+	 * @param base graph to extend
+	 * @param nodeLimit number of search nodes to visit before settling for the best coloring found
+	 * @param rnd source of randomness for breaking ties (seeded for reproducible extensions)
+	 */
+	public GraphExtender(Graph base, long nodeLimit, SplittableRandom rnd) {
+		this.base = base;
+		this.size = base.size();
+		this.nodeLimit = nodeLimit;
+		this.rnd = rnd;
+
+		List<Long> set = findCliques(true);
+		List<Long> unset = findCliques(false);
+
+		//color busiest nodes first
+		final int[] participation = new int[size];
+		for(long clique: set) addParticipation(participation, clique);
+		for(long clique: unset) addParticipation(participation, clique);
+
+		Integer[] byParticipation = new Integer[size];
+		for(int node=0; node < size; node++) byParticipation[node] = node;
+		Arrays.sort(byParticipation, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return participation[b] - participation[a];
+			}
+		});
+
+		order = new int[size];
+		int[] depth = new int[size];
+		for(int d=0; d < size; d++) {
+			order[d] = byParticipation[d];
+			depth[order[d]] = d;
+		}
+
+		setCliques = groupByLastDepth(set, depth);
+		unsetCliques = groupByLastDepth(unset, depth);
+	}
+
+	/**
+	 * Extend the graph by one node
+	 * @return extended graph, with as few cliques as the search could find
+	 */
+	public Graph extend() {
+		visited = 0;
+		bestCount = Integer.MAX_VALUE;
+		bestSetEdges = 0;
+		search(0, 0, 0, 0);
+
+		Graph graph = base.extend();
+		for(long nodes = bestSetEdges; nodes != 0; nodes &= nodes-1)
+			graph.set(Long.numberOfTrailingZeros(nodes), size, true);
+		return graph;
+	}
+
+	/**
+	 * Get number of cliques the last extension created
+	 * @return number of new cliques (0 if the extension is clique free)
+	 */
+	public int getNewCliques() {
+		return bestCount;
+	}
+
+	/**
+	 * Get number of search nodes the last extension visited
+	 * @return number of search nodes
+	 */
+	public long getVisited() {
+		return visited;
+	}
+
+	//--------------------------------------------------------
+	//					Private Methods
+	//--------------------------------------------------------
+
+	/**
+	 * Color the edge from the node at given depth to the new node both ways, and recurse
+	 * @param depth number of edges colored so far
+	 * @param setEdges nodes whose edge to the new node is set
+	 * @param unsetEdges nodes whose edge to the new node is unset
+	 * @param count number of cliques created so far
+	 */
+	private void search(int depth, long setEdges, long unsetEdges, int count) {
+		if(count >= bestCount || bestCount == 0 || visited >= nodeLimit) return;
+		visited++;
+
+		if(depth == size) {
+			bestCount = count;
+			bestSetEdges = setEdges;
+			return;
+		}
+
+		long node = 1L << order[depth];
+		int countSet = count + completed(setCliques[depth], setEdges | node);
+		int countUnset = count + completed(unsetCliques[depth], unsetEdges | node);
+
+		//try the cheaper color first (randomly if equal, so extensions of a graph differ)
+		if(countSet < countUnset || (countSet == countUnset && rnd.nextBoolean())) {
+			search(depth+1, setEdges | node, unsetEdges, countSet);
+			search(depth+1, setEdges, unsetEdges | node, countUnset);
+		}
+		else {
+			search(depth+1, setEdges, unsetEdges | node, countUnset);
+			search(depth+1, setEdges | node, unsetEdges, countSet);
+		}
+	}
+
+	/**
+	 * Count cliques whose nodes are all joined to the new node by the clique's color
+	 * @param cliques to check
+	 * @param joined nodes joined to the new node by the clique's color
+	 * @return number of completed cliques
+	 */
+	private static int completed(long[] cliques, long joined) {
+		int count = 0;
+		for(long clique: cliques)
+			if((clique & ~joined) == 0) count++;
+		return count;
+	}
+
+	/**
+	 * Find all cliques of a color in the base graph, that the new node could complete
+	 * (one node smaller than the clique size of the color)
+	 * @param value color of cliques
+	 * @return node mask of every clique
+	 */
+	private List<Long> findCliques(boolean value) {
+		List<Long> cliques = new ArrayList<Long>();
+		long all = size == Graph.MAX_SIZE ? -1L : (1L << size) - 1;
+		findCliques(value, 0, all, base.cliqueSize(value)-1, cliques);
+		return cliques;
+	}
+	
+	/**
+	 * Add every clique made of given members and more nodes from the candidates
+	 * @param value color of cliques
+	 * @param members nodes chosen so far
+	 * @param candidates nodes joined to all members (after the last one)
+	 * @param remaining number of nodes left to add
+	 * @param cliques to add to
+	 */
+	private void findCliques(boolean value, long members, long candidates, int remaining, List<Long> cliques) {
+		if(remaining == 0) {
+			cliques.add(members);
+			return;
+		}
+		for(long vs = candidates; vs != 0; vs &= vs-1) {
+			int v = Long.numberOfTrailingZeros(vs);
+			findCliques(value, members | (1L << v), candidates & base.neighborMask(v, value) & above(v), remaining-1, cliques);
+		}
+	}
+
+	private static void addParticipation(int[] participation, long clique) {
+		for(long nodes = clique; nodes != 0; nodes &= nodes-1)
+			participation[Long.numberOfTrailingZeros(nodes)]++;
+	}
+
+	/**
+	 * Group cliques by the depth at which their last node is colored
+	 * (the only depth at which they can be completed)
+	 * @param cliques to group
+	 * @param depth at which each node is colored
+	 * @return cliques of every depth
+	 */
+	private long[][] groupByLastDepth(List<Long> cliques, int[] depth) {
+		int[] counts = new int[size];
+		int[] last = new int[cliques.size()];
+		for(int c=0; c < cliques.size(); c++) {
+			for(long nodes = cliques.get(c); nodes != 0; nodes &= nodes-1)
+				last[c] = Math.max(last[c], depth[Long.numberOfTrailingZeros(nodes)]);
+			counts[last[c]]++;
+		}
+
+		long[][] grouped = new long[size][];
+		for(int d=0; d < size; d++) grouped[d] = new long[counts[d]];
+		for(int c=cliques.size()-1; c >= 0; c--)
+			grouped[last[c]][--counts[last[c]]] = cliques.get(c);
+		return grouped;
+	}
+
+	/**
+	 * Mask of all nodes after given node
+	 * @param node
+	 * @return the mask
+	 */
+	private static long above(int node){
+		return -2L << node;
+	}
+}
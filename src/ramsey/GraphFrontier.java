@@ -0,0 +1,215 @@
+package ramsey;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The unassigned graphs of a store, handed out best score first.
+ *
+ * Graphs are kept in one max heap per size, ordered by their score when they were last scored.
+ * Scores only drop while a graph waits, as its lineage is handed out (see FrontierScore), so only the top
+ * of a heap has to be rescored before it is handed out: if its score dropped it is sifted down (O(log n)),
+ * and the new top is checked.
+ * The best graph is the best of the tops of all sizes up to the size asked for.
+ *
+ * The lineage of a graph is the graph it was extended from (or itself if none),
+ * and the frontier counts how many graphs of every lineage it handed out.
+ *
+ * Thread safe: every size has its own lock (its heap), so graphs of different sizes are added and handed out
+ * at the same time. The score of the top of every heap is published whenever it changes, so finding
+ * the best size takes no lock: only the heap of that size is locked, to rescore its top and remove it
+ * (if the top's score dropped below the published one, the sizes are compared again).
+ *
+ * @author Michael Nekrasov
+ * @author Roman Kazarin
+ *
+ */
+public class GraphFrontier {
+
+	private final FrontierScore score;
+	private final List<Entry>[] heaps;
+	private final AtomicLongArray tops;
+	private final ConcurrentMap<UUID, AtomicInteger> lineageDraws = new ConcurrentHashMap<UUID, AtomicInteger>();
+	private final long created = System.currentTimeMillis();
+
+	/**
+	 * Create empty frontier
+	 * @param maxSize largest graph size
+	 * @param score to order graphs by
+	 */
+	@SuppressWarnings("unchecked")
+	public GraphFrontier(int maxSize, FrontierScore score) {
+		this.score = score;
+		this.heaps = new List[maxSize+1];
+		this.tops = new AtomicLongArray(maxSize+1);
+		for(int size=0; size <= maxSize; size++) {
+			heaps[size] = new ArrayList<Entry>();
+			publish(size);
+		}
+	}
+
+	/**
+	 * Add a graph
+	 * @param graph to add
+	 */
+	public void add(Graph graph) {
+		Entry entry = new Entry(graph, System.currentTimeMillis() - created);
+		entry.score = scoreOf(entry);
+
+		List<Entry> heap = heaps[graph.size()];
+		synchronized (heap) {
+			heap.add(entry);
+			siftUp(heap, heap.size()-1);
+			publish(graph.size());
+		}
+	}
+
+	/**
+	 * Remove the best graph (by score) of size equal to or smaller than requested
+	 * @param startingAt maximum size of graph
+	 * @return the graph, or null if there is none
+	 */
+	public Graph poll(int startingAt) {
+		while(true) {
+			//find the best size by the published scores, without locking
+			int bestSize = -1;
+			double bestScore = Double.NEGATIVE_INFINITY;
+			for(int size=Math.min(startingAt, heaps.length-1); size >= 0; size--) {
+				double score = published(size);
+				if(score > bestScore) {
+					bestSize = size;
+					bestScore = score;
+				}
+			}
+			if(bestSize < 0) return null;
+
+			Graph graph;
+			List<Entry> heap = heaps[bestSize];
+			synchronized (heap) {
+				Entry top = freshTop(heap);
+				if(top == null || top.score < bestScore) {
+					//taken or rescored meanwhile, another size may be better now
+					publish(bestSize);
+					continue;
+				}
+				graph = top.graph;
+				removeTop(heap);
+				publish(bestSize);
+			}
+
+			AtomicInteger draws = lineageDraws.get(lineageOf(graph));
+			if(draws == null) {
+				AtomicInteger first = lineageDraws.putIfAbsent(lineageOf(graph), draws = new AtomicInteger());
+				if(first != null) draws = first;
+			}
+			draws.incrementAndGet();
+			return graph;
+		}
+	}
+
+	/**
+	 * Is there no graph of a size (without locking)
+	 * @param size of graphs
+	 * @return true if there is none
+	 */
+	public boolean isEmpty(int size) {
+		return published(size) == Double.NEGATIVE_INFINITY;
+	}
+
+	//--------------------------------------------------------
+	//					Private Methods
+	//--------------------------------------------------------
+
+	/**
+	 * Rescore the top of a heap until it keeps its score
+	 * @param heap to check
+	 * @return top of heap with an up to date score, or null if the heap is empty
+	 */
+	private Entry freshTop(List<Entry> heap) {
+		while(!heap.isEmpty()) {
+			Entry top = heap.get(0);
+			double current = scoreOf(top);
+			if(current >= top.score) {
+				top.score = current;
+				return top;
+			}
+			top.score = current;
+			siftDown(heap, 0);
+		}
+		return null;
+	}
+
+	private double scoreOf(Entry entry) {
+		AtomicInteger draws = lineageDraws.get(lineageOf(entry.graph));
+		return score.score(entry.graph, entry.joined, draws == null ? 0 : draws.get());
+	}
+
+	/**
+	 * Publish the score of the top of a heap (the caller holds the heap, or no other thread has the frontier yet)
+	 * @param size of heap
+	 */
+	private void publish(int size) {
+		List<Entry> heap = heaps[size];
+		double top = heap.isEmpty() ? Double.NEGATIVE_INFINITY : heap.get(0).score;
+		tops.set(size, Double.doubleToRawLongBits(top));
+	}
+
+	private double published(int size) {
+		return Double.longBitsToDouble(tops.get(size));
+	}
+
+	private static UUID lineageOf(Graph graph) {
+		return graph.getOriginId() != null ? graph.getOriginId() : graph.getId();
+	}
+
+	private void removeTop(List<Entry> heap) {
+		Entry last = heap.remove(heap.size()-1);
+		if(heap.isEmpty()) return;
+		heap.set(0, last);
+		siftDown(heap, 0);
+	}
+
+	private void siftUp(List<Entry> heap, int position) {
+		Entry entry = heap.get(position);
+		while(position > 0) {
+			int parent = (position-1)/2;
+			if(heap.get(parent).score >= entry.score) break;
+			heap.set(position, heap.get(parent));
+			position = parent;
+		}
+		heap.set(position, entry);
+	}
+
+	private void siftDown(List<Entry> heap, int position) {
+		Entry entry = heap.get(position);
+		int half = heap.size()/2;
+		while(position < half) {
+			int child = 2*position+1;
+			if(child+1 < heap.size() && heap.get(child+1).score > heap.get(child).score)
+				child++;
+			if(entry.score >= heap.get(child).score) break;
+			heap.set(position, heap.get(child));
+			position = child;
+		}
+		heap.set(position, entry);
+	}
+
+	/**
+	 * A graph in the frontier, with the time it joined and its last score
+	 */
+	private static class Entry {
+		final Graph graph;
+		final long joined;
+		double score;
+
+		Entry(Graph graph, long joined) {
+			this.graph = graph;
+			this.joined = joined;
+		}
+	}
+}
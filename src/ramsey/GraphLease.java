@@ -0,0 +1,59 @@
+package ramsey;
+
+import java.io.Serializable;
+
+/**
+ * A graph handed out by a GraphStore for a limited time.
+ * The holder renews the lease while it searches on the graph, and releases it when done.
+ * If the lease expires first (its holder is gone), the store hands the graph out again.
+ *
+ * @author Michael Nekrasov
+ * @author Roman Kazarin
+ *
+ */
+public class GraphLease implements Serializable {
+
+	private static final long serialVersionUID = -3415238405468126794L;
+
+	private final long id;
+	private final Graph graph;
+	private volatile long deadline;
+
+	/**
+	 * Create lease
+	 * @param id of lease (unique within the store)
+	 * @param graph leased
+	 * @param deadline time (of the store's clock) at which the lease expires
+	 */
+	public GraphLease(long id, Graph graph, long deadline) {
+		this.id = id;
+		this.graph = graph;
+		this.deadline = deadline;
+	}
+
+	public long getId()			{ return id; }
+	public Graph getGraph()		{ return graph; }
+	public long getDeadline()	{ return deadline; }
+
+	/**
+	 * Move the deadline (only the store's copy counts)
+	 * @param deadline time (of the store's clock) at which the lease expires
+	 */
+	public void setDeadline(long deadline) {
+		this.deadline = deadline;
+	}
+
+	/**
+	 * Has the lease expired
+	 * @param now time of the store's clock
+	 * @return true if expired
+	 */
+	public boolean isExpired(long now) {
+		return now >= deadline;
+	}
+
+	@Override
+	public String toString() {
+		return "Lease "+id+" of Graph Size "+graph.size();
+	}
+}
@@ -0,0 +1,247 @@
+package ramsey;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * An append only log of graphs, so a store only has to write the graphs it accepted
+ * since its last snapshot (instead of the whole bank) to keep them safe.
+ *
+ * Every record is the graph's compact binary form (Graph.writeTo()), preceded by its length and checksum.
+ * Appended records are buffered, and written and forced to disk by sync(). Callers that sync
+ * at the same time share a single write and fsync (group commit): the first one writes everything
+ * appended so far, and the others only wait for it.
+ *
+ * A record cut short by a crash fails its checksum, and ends the replay (opening the log cuts it off).
+ *
+ * @author Michael Nekrasov
+ * @author Roman Kazarin
+ *
+ */
+public class GraphLog implements Closeable {
+
+	/** Length and checksum of every record */
+	private static final int RECORD_HEADER_SIZE = 8;
+
+	private final File file;
+	private FileOutputStream out;
+
+	private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+	private long appended = 0;
+	private long durable = 0;
+	private boolean syncing = false;
+	private long length;
+
+	/**
+	 * Open log for appending (creating it if it does not exist).
+	 * A record cut short at the end of the log is cut off, so new records are not appended after it
+	 * (where the replay would never reach them).
+	 * @param file of the log
+	 * @throws IOException
+	 */
+	public GraphLog(File file) throws IOException {
+		this.file = file;
+		long intact = read(file, null);
+		if(intact < file.length()) {
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.setLength(intact);
+			}
+			finally {
+				raf.close();
+			}
+		}
+		this.out = new FileOutputStream(file, true);
+		this.length = intact;
+	}
+
+	/**
+	 * Append a graph to the log (not yet durable, see sync())
+	 * @param graph to append
+	 * @return sequence number of the record, to sync() on
+	 * @throws IOException
+	 */
+	public long append(Graph graph) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		graph.writeTo(new DataOutputStream(bytes));
+		byte[] record = bytes.toByteArray();
+
+		CRC32 crc = new CRC32();
+		crc.update(record);
+
+		synchronized (this) {
+			DataOutputStream data = new DataOutputStream(pending);
+			data.writeInt(record.length);
+			data.writeInt((int) crc.getValue());
+			data.write(record);
+			return ++appended;
+		}
+	}
+
+	/**
+	 * Wait until a record is written and forced to disk
+	 * (writing, together with it, every record appended before the call, unless some other caller already does)
+	 * @param sequence number of the record (from append())
+	 * @throws IOException if the log could not be written
+	 * @throws InterruptedException
+	 */
+	public void sync(long sequence) throws IOException, InterruptedException {
+		byte[] batch;
+		long upTo;
+		FileOutputStream target;
+		synchronized (this) {
+			while(syncing && durable < sequence)
+				wait();
+			if(durable >= sequence) return;
+
+			//lead this group commit
+			syncing = true;
+			batch = pending.toByteArray();
+			pending = new ByteArrayOutputStream();
+			upTo = appended;
+			target = out;
+		}
+
+		boolean written = false;
+		try {
+			target.write(batch);
+			target.getChannel().force(false);
+			written = true;
+		}
+		finally {
+			synchronized (this) {
+				if(written) {
+					durable = upTo;
+					length += batch.length;
+				}
+				else {
+					//put the batch back in front of what was appended meanwhile, for the next sync
+					ByteArrayOutputStream retry = new ByteArrayOutputStream();
+					retry.write(batch);
+					pending.writeTo(retry);
+					pending = retry;
+				}
+				syncing = false;
+				notifyAll();
+				if(target != out)
+					target.close();
+			}
+		}
+	}
+
+	/**
+	 * Sync every record appended so far
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void sync() throws IOException, InterruptedException {
+		long sequence;
+		synchronized (this) {
+			sequence = appended;
+		}
+		sync(sequence);
+	}
+
+	/**
+	 * Move the log to another file, and continue in a new empty log, without waiting for any write
+	 * (the store rolls the log over when it takes a snapshot, and deletes the old log once the snapshot is safe).
+	 * Records not yet written go to the new log, and a write in progress still goes to the old one,
+	 * so the old log holds only records appended before the roll over.
+	 * @param rolledFile to move the log to (must not exist)
+	 * @throws IOException
+	 */
+	public synchronized void rollOver(File rolledFile) throws IOException {
+		if(!file.renameTo(rolledFile))
+			throw new IOException("Could not move log "+file+" to "+rolledFile);
+		FileOutputStream retired = out;
+		out = new FileOutputStream(file, true);
+		length = 0;
+		
+		//a write in progress closes the old log once done
+		if(!syncing)
+			retired.close();
+	}
+
+	/**
+	 * Get number of bytes written to the log (since the last roll over)
+	 * @return number of bytes
+	 */
+	public synchronized long length() {
+		return length;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		out.write(pending.toByteArray());
+		pending = new ByteArrayOutputStream();
+		durable = appended;
+		out.close();
+	}
+
+	/**
+	 * Read all intact records of a log (stopping at the first one that is cut short or corrupt)
+	 * @param file of the log
+	 * @return graphs in the order they were appended (empty if the file does not exist)
+	 * @throws IOException if the file could not be read
+	 */
+	public static List<Graph> replay(File file) throws IOException {
+		List<Graph> graphs = new ArrayList<Graph>();
+		read(file, graphs);
+		return graphs;
+	}
+
+	/**
+	 * Read the intact records of a log
+	 * @param file of the log
+	 * @param graphs to add the graphs of the records to (or null to only find their length)
+	 * @return number of bytes of the intact records
+	 * @throws IOException if the file could not be read
+	 */
+	private static long read(File file, List<Graph> graphs) throws IOException {
+		long intact = 0;
+		if(!file.exists()) return intact;
+
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			while(true) {
+				byte[] record;
+				int checksum;
+				try {
+					int recordLength = in.readInt();
+					checksum = in.readInt();
+					if(recordLength <= 0 || recordLength > file.length()) break;
+					record = new byte[recordLength];
+					in.readFully(record);
+				}
+				catch(EOFException e) {
+					break;
+				}
+
+				CRC32 crc = new CRC32();
+				crc.update(record);
+				if((int) crc.getValue() != checksum) break;
+
+				if(graphs != null)
+					graphs.add(Graph.readFrom(new DataInputStream(new ByteArrayInputStream(record))));
+				intact += RECORD_HEADER_SIZE + record.length;
+			}
+		}
+		finally {
+			in.close();
+		}
+		return intact;
+	}
+}
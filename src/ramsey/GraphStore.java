@@ -2,10 +2,12 @@ package ramsey;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 import java.util.UUID;
 
 /**
  * Defines a repository of graphs.
+ * Most calls have a batch variant, that does the work of many calls in a single round trip.
  * @author Michael Nekrasov
  * @author Roman Kazarin
  *
@@ -22,6 +24,25 @@ public interface GraphStore extends Remote{
 	 */
 	public static String DEFAULT_NAME = "GraphStore";
 	
+	/**
+	 * How long a lease lasts unless renewed (ms)
+	 */
+	public static long DEFAULT_LEASE_DURATION = 300000;
+	
+	/**
+	 * Get the smallest size of graph the store accepts
+	 * @return size of graph
+	 * @throws RemoteException
+	 */
+	int getMinSize() throws RemoteException;
+	
+	/**
+	 * Get the largest size of graph the store accepts
+	 * @return size of graph
+	 * @throws RemoteException
+	 */
+	int getMaxSize() throws RemoteException;
+	
 	/**
 	 * Put a graph into the store
 	 * @param graph to store
@@ -52,4 +73,83 @@ public interface GraphStore extends Remote{
 	 * @throws RemoteException
 	 */
 	Graph getBestUnasigned(int startingAt) throws RemoteException;
+	
+	/**
+	 * Lease best graph of size equal to or smaller then requested that is not yet assigned.
+	 * The graph goes back to the unassigned graphs if the lease expires before it is released.
+	 * @param startingAt Maximum size of graph to lease
+	 * @param duration of lease (ms)
+	 * @return the lease, or null if there is no graph
+	 * @throws RemoteException
+	 */
+	GraphLease lease(int startingAt, long duration) throws RemoteException;
+	
+	/**
+	 * Extend a lease
+	 * @param leaseId id of lease
+	 * @param duration of lease from now (ms)
+	 * @return false if the lease already expired (and the graph may be leased by someone else)
+	 * @throws RemoteException
+	 */
+	boolean renew(long leaseId, long duration) throws RemoteException;
+	
+	/**
+	 * Release a leased graph that is done with. If no larger counterexample was found from it,
+	 * the failure is counted and the graph goes back to the unassigned graphs (ranked by the failure).
+	 * @param leaseId id of lease
+	 * @param extended was a larger counterexample found from the graph
+	 * @throws RemoteException
+	 */
+	void release(long leaseId, boolean extended) throws RemoteException;
+	
+	/**
+	 * Give back a leased graph that was not searched on
+	 * (it goes back to the unassigned graphs, without counting a failure)
+	 * @param leaseId id of lease
+	 * @throws RemoteException
+	 */
+	void giveBack(long leaseId) throws RemoteException;
+	
+	/**
+	 * Put many graphs into the store (in one call)
+	 * @param graphs to store
+	 * @return for every graph, if it was accepted
+	 * @throws RemoteException
+	 */
+	boolean[] putAll(List<Graph> graphs) throws RemoteException;
+	
+	/**
+	 * Check which of many graphs are in the store (in one call)
+	 * @param graphIds ids of graphs
+	 * @return for every id, if present in store
+	 * @throws RemoteException
+	 */
+	boolean[] containsAll(List<UUID> graphIds) throws RemoteException;
+	
+	/**
+	 * Lease up to count of the best graphs of size equal to or smaller then requested (in one call)
+	 * @param startingAt Maximum size of graph to lease
+	 * @param count number of graphs wanted
+	 * @param duration of leases (ms)
+	 * @return the leases, best first (fewer than count if the store runs out)
+	 * @throws RemoteException
+	 */
+	List<GraphLease> leaseMany(int startingAt, int count, long duration) throws RemoteException;
+	
+	/**
+	 * Extend many leases (in one call)
+	 * @param leaseIds ids of leases
+	 * @param duration of leases from now (ms)
+	 * @return for every lease, false if it already expired
+	 * @throws RemoteException
+	 */
+	boolean[] renewAll(long[] leaseIds, long duration) throws RemoteException;
+	
+	/**
+	 * Release many leases (in one call)
+	 * @param leaseIds ids of leases
+	 * @param extended for every lease, was a larger counterexample found from its graph
+	 * @throws RemoteException
+	 */
+	void releaseAll(long[] leaseIds, boolean[] extended) throws RemoteException;
 }
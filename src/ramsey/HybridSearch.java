@@ -0,0 +1,73 @@
+package ramsey;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import api.ComputerCallback;
+
+/**
+ * Runs a cheap annealing search first to bring the clique count down,
+ * and finishes with a taboo search if annealing did not find a counterexample
+ * (unless the monitor stopped the annealing).
+ * 
+ * @author Michael Nekrasov
+ * @author Roman Kazarin
+ *
+ */
+public class HybridSearch implements SearchStrategy {
+
+	private static final long serialVersionUID = 2402794604281853313L;
+	
+	public static final long DEFAULT_ANNEALING_STEPS = 200000;
+	
+	private final AnnealingSearch annealing;
+	private final TabooSearch taboo;
+	
+	public HybridSearch() {
+		this(new AnnealingSearch(AnnealingSearch.DEFAULT_START_TEMPERATURE, AnnealingSearch.DEFAULT_COOLING, DEFAULT_ANNEALING_STEPS), new TabooSearch());
+	}
+	
+	/**
+	 * Create hybrid search
+	 * @param annealing search to run first
+	 * @param taboo search to finish with
+	 */
+	public HybridSearch(AnnealingSearch annealing, TabooSearch taboo) {
+		this.annealing = annealing;
+		this.taboo = taboo;
+	}
+
+	@Override
+	public boolean findCounterExample(Graph g, ComputerCallback<Graph> callback, final SearchMonitor monitor) throws Exception {
+		//annealing gives up the same way whether it ran out of steps or was stopped
+		final AtomicBoolean stopped = new AtomicBoolean(false);
+		SearchMonitor annealingMonitor = new SearchMonitor() {
+			@Override
+			public boolean onStep(Graph graph, int count) {
+				if(monitor.onStep(graph, count)) return true;
+				stopped.set(true);
+				return false;
+			}
+		};
+		
+		if(annealing.findCounterExample(g, callback, annealingMonitor)) return true;
+		if(stopped.get()) return false;
+		return taboo.findCounterExample(g, callback, monitor);
+	}
+	
+	@Override
+	public HybridSearch copy() {
+		return new HybridSearch(annealing.copy(), taboo.copy());
+	}
+	
+	@Override
+	public void setRandom(SplittableRandom random) {
+		annealing.setRandom(random);
+		taboo.setRandom(random);
+	}
+	
+	@Override
+	public String getName() {
+		return "Hybrid";
+	}
+}
@@ -0,0 +1,36 @@
+package ramsey;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+
+/**
+ * Reads objects serialized before Graph kept its edges as row masks (such as the map of graphs
+ * an older store saved as its bank). Graphs of the old layout are read as Graph.LegacyForm,
+ * and replaced by Graphs; graphs of the current layout are read as usual.
+ *
+ * @author Michael Nekrasov
+ * @author Roman Kazarin
+ *
+ */
+public class LegacyGraphInputStream extends ObjectInputStream {
+
+	/**
+	 * Create stream
+	 * @param in to read from
+	 * @throws IOException if the stream header can not be read
+	 */
+	public LegacyGraphInputStream(InputStream in) throws IOException {
+		super(in);
+	}
+
+	@Override
+	protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+		ObjectStreamClass descriptor = super.readClassDescriptor();
+		if(descriptor.getName().equals(Graph.class.getName())
+				&& descriptor.getSerialVersionUID() == Graph.LegacyForm.serialVersionUID)
+			return ObjectStreamClass.lookup(Graph.LegacyForm.class);
+		return descriptor;
+	}
+}
@@ -0,0 +1,223 @@
+package ramsey;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import api.ComputerCallback;
+
+/**
+ * Runs several searches (members) on the same graph in parallel, and keeps the first counterexample found.
+ * Every member works on its own copy of the graph, with its own strategy and its own seeded SplittableRandom,
+ * which it uses to restart from a randomly perturbed copy (except for the first member, which starts
+ * from the graph as is) and for any random choices of its strategy.
+ *
+ * Member seeds are drawn from a seed of the portfolio, and recorded. Since every member depends
+ * only on the graph, its strategy and its seed, the winning search can be replayed exactly
+ * (for example for profiling) with replay().
+ *
+ * @author Michael Nekrasov
+ * @author Roman Kazarin
+ *
+ */
+public class PortfolioSearch implements SearchStrategy {
+
+	private static final long serialVersionUID = -7723810969851042870L;
+
+	/**
+	 * Number of random edge flips a restart starts with
+	 */
+	public static final int DEFAULT_PERTURBATION = 10;
+
+	private final List<SearchStrategy> members;
+	private final int perturbation;
+	private long seed;
+
+	private transient long[] lastSeeds;
+	private transient int lastWinner = -1;
+
+	/**
+	 * Create portfolio with a random seed
+	 * @param members strategies to run (copied for every graph)
+	 */
+	public PortfolioSearch(List<SearchStrategy> members) {
+		this(members, new SplittableRandom().nextLong(), DEFAULT_PERTURBATION);
+	}
+
+	/**
+	 * Create portfolio
+	 * @param members strategies to run (copied for every graph)
+	 * @param seed to draw member seeds from
+	 * @param perturbation number of random edge flips a restart starts with
+	 */
+	public PortfolioSearch(List<SearchStrategy> members, long seed, int perturbation) {
+		if(members.isEmpty())
+			throw new IllegalArgumentException("Portfolio needs at least one member");
+		this.members = new ArrayList<SearchStrategy>(members);
+		this.seed = seed;
+		this.perturbation = perturbation;
+	}
+
+	@Override
+	public boolean findCounterExample(final Graph g, final ComputerCallback<Graph> callback, final SearchMonitor monitor) throws Exception {
+		final int k = members.size();
+		final long[] seeds = nextSeeds();
+		final Graph[] results = new Graph[k];
+		final AtomicInteger winner = new AtomicInteger(-1);
+		lastSeeds = seeds;
+		lastWinner = -1;
+
+		//members stop once one of them won, or the task wants to stop
+		final SearchMonitor memberMonitor = new SearchMonitor() {
+			@Override
+			public boolean onStep(Graph graph, int count) {
+				if(winner.get() >= 0) return false;
+				synchronized (monitor) {
+					return monitor.onStep(graph, count);
+				}
+			}
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool(k);
+		try {
+			List<Future<Boolean>> runs = new ArrayList<Future<Boolean>>();
+			for(int m=0; m < k; m++) {
+				final int member = m;
+				runs.add(executor.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() throws Exception {
+						Graph start = new Graph(g);
+						if(!runMember(start, member, seeds[member], callback, memberMonitor))
+							return false;
+						if(winner.compareAndSet(-1, member))
+							results[member] = start;
+						return true;
+					}
+				}));
+			}
+			for(Future<Boolean> run: runs)
+				run.get();
+		}
+		catch(ExecutionException e) {
+			winner.compareAndSet(-1, k); //stop the others
+			throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+		}
+		finally {
+			executor.shutdownNow();
+		}
+
+		int won = winner.get();
+		if(won < 0) return false;
+
+		lastWinner = won;
+		callback.printMessage("Portfolio member "+won+" ("+members.get(won).getName()+") won with seed "+seeds[won]);
+		for(int i=0; i < g.size(); i++)
+			for(int j=i+1; j < g.size(); j++)
+				g.set(i, j, results[won].get(i, j));
+		return true;
+	}
+
+	/**
+	 * Run a single member exactly as it ran in the portfolio (on the calling thread)
+	 * @param g graph the portfolio was given (modified by the search)
+	 * @param member index of member
+	 * @param seed recorded for the member
+	 * @param callback of the Computer running the search
+	 * @param monitor to report every step to
+	 * @return true if a counterexample was found
+	 * @throws Exception
+	 */
+	public boolean replay(Graph g, int member, long seed, ComputerCallback<Graph> callback, SearchMonitor monitor) throws Exception {
+		return runMember(g, member, seed, callback, monitor);
+	}
+
+	/**
+	 * Get seeds of the members in the last search
+	 * @return seeds (indexed by member), or null if there was no search yet
+	 */
+	public long[] getLastSeeds() {
+		return lastSeeds == null ? null : lastSeeds.clone();
+	}
+
+	/**
+	 * Get member that found the counterexample in the last search
+	 * @return index of member, or -1 if none did
+	 */
+	public int getLastWinner() {
+		return lastWinner;
+	}
+
+	/**
+	 * Copies the members and the seed (a running search is not copied,
+	 * so a resumed portfolio starts its members over on the checkpointed graph)
+	 */
+	@Override
+	public PortfolioSearch copy() {
+		List<SearchStrategy> copies = new ArrayList<SearchStrategy>();
+		for(SearchStrategy member: members)
+			copies.add(member.copy());
+		return new PortfolioSearch(copies, seed, perturbation);
+	}
+
+	/**
+	 * Replaces the seed of the portfolio with one drawn from the given random
+	 */
+	@Override
+	public void setRandom(SplittableRandom random) {
+		seed = random.nextLong();
+	}
+
+	@Override
+	public String getName() {
+		String[] names = new String[members.size()];
+		for(int m=0; m < names.length; m++)
+			names[m] = members.get(m).getName();
+		return "Portfolio"+Arrays.toString(names);
+	}
+
+	//--------------------------------------------------------
+	//					Private Methods
+	//--------------------------------------------------------
+
+	/**
+	 * Run a member on a graph: perturb the graph (unless first member), and search it
+	 * @param g graph to search (modified)
+	 * @param member index of member
+	 * @param seed of member
+	 * @param callback of the Computer running the search
+	 * @param monitor to report every step to
+	 * @return true if a counterexample was found
+	 * @throws Exception
+	 */
+	private boolean runMember(Graph g, int member, long seed, ComputerCallback<Graph> callback, SearchMonitor monitor) throws Exception {
+		SplittableRandom random = new SplittableRandom(seed);
+		if(member > 0) {
+			for(int flip=0; flip < perturbation; flip++)
+				g.flipRandom(random);
+		}
+
+		SearchStrategy strategy = members.get(member).copy();
+		strategy.setRandom(random);
+		return strategy.findCounterExample(g, callback, monitor);
+	}
+
+	/**
+	 * Draw a seed for every member, and move the portfolio seed on (so every graph gets new seeds)
+	 * @return seeds
+	 */
+	private long[] nextSeeds() {
+		SplittableRandom random = new SplittableRandom(seed);
+		long[] seeds = new long[members.size()];
+		for(int m=0; m < seeds.length; m++)
+			seeds[m] = random.nextLong();
+		seed = random.nextLong();
+		return seeds;
+	}
+}
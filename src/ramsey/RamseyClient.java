@@ -10,7 +10,7 @@ import system.StateBlank;
 import api.Space;
 
 /**
- * Runs a Client that connects to a RamseyStore and Space and begins an R(5,5) search.
+ * Runs a Client that connects to a RamseyStore and Space and begins an R(s,t) search (R(5,5) by default).
  * Print out solutions as they are encountered.
  * Can be disconected at any point after seting up the run.
  * 
@@ -24,17 +24,22 @@ public class RamseyClient {
 	public static void main(String[] args) throws RemoteException, InterruptedException, MalformedURLException, NotBoundException {
 		String spaceIp = (args.length > 0)? args[0] : "localhost";
 		String storeIp = (args.length > 0)? args[1] : "localhost";
+		boolean circulant = (args.length > 2)? Boolean.parseBoolean(args[2]) : false;
+		int s = (args.length > 3 && args[3].matches("\\d+"))? Integer.parseInt(args[3]) : Graph.DEFAULT_CLIQUE_SIZE;
+		int t = (args.length > 4 && args[4].matches("\\d+"))? Integer.parseInt(args[4]) : s;
+		boolean portfolio = (args.length > 5)? Boolean.parseBoolean(args[5]) : false;
 		
 		String spaceUrl = "rmi://" + spaceIp + ":" + Space.DEFAULT_PORT + "/" + Space.DEFAULT_NAME;
-		String storeUrl = "rmi://" + storeIp + ":" + GraphStore.DEFAULT_PORT + "/" + GraphStore.DEFAULT_NAME;
+		String storeUrl = storeUrl(storeIp);
 		
 		Log.startLog("ramsey-client.csv");
 		System.out.println("Starting Client");
 		System.out.println("\tTargeting Space: "+spaceUrl);
-		System.out.println("\tTargeting Store: "+storeUrl);
+		System.out.println("\tTargeting Store: "+storeUrl.replace(ShardedGraphStore.ADDRESS_SEPARATOR, ", "));
+		System.out.println("\tSearching: R("+s+","+t+")"+(circulant?" over circulant graphs":"")+(portfolio?" with a portfolio of searches":""));
 		
 		Space<Graph> space = (Space<Graph>) Naming.lookup(spaceUrl);
-		space.setJob(null , new StateBlank(), new RamseyScheduler(storeUrl) );
+		space.setJob(null , new StateBlank(), new RamseyScheduler(storeUrl, circulant, s, t, portfolio) );
 
 		System.out.println("\nSolutions:\n");
 		
@@ -42,4 +47,20 @@ public class RamseyClient {
 			System.out.println(space.getSolution());
 		}	
 	}
+	
+	/**
+	 * Get the RMI address of a store, or of every shard of a sharded store
+	 * @param store host, or shards separated by ShardedGraphStore.ADDRESS_SEPARATOR, each host[:port[/name]]
+	 * @return RMI addresses, separated by ShardedGraphStore.ADDRESS_SEPARATOR
+	 */
+	private static String storeUrl(String store){
+		String urls = "";
+		for(String shard: store.split(ShardedGraphStore.ADDRESS_SEPARATOR)){
+			String url = "rmi://" + shard.trim();
+			if(!shard.contains(":")) url += ":" + GraphStore.DEFAULT_PORT;
+			if(!shard.contains("/")) url += "/" + GraphStore.DEFAULT_NAME;
+			urls += (urls.isEmpty()? "" : ShardedGraphStore.ADDRESS_SEPARATOR) + url;
+		}
+		return urls;
+	}
 }
@@ -1,13 +1,18 @@
 package ramsey;
 
 import java.net.MalformedURLException;
-import java.rmi.Naming;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import api.Capabilities;
 import api.Proxy;
@@ -19,10 +24,31 @@ import api.Task;
 import util.Log;
 
 /**
- * Defines a Ramsey Scheduler that searches for R(5,5) assigning tasks
+ * Defines a Ramsey Scheduler that searches for R(s,t) (R(5,5) by default) assigning tasks
  * to computers in an efficient manner based on the current progress and the capabilities
  * of the connected computers.
  * 
+ * Keeps the latest checkpoint of every running task, so tasks left over by a lost computer
+ * resume from where they were instead of starting over.
+ * Tasks search on a budget, and long running tasks that fall too far behind 
+ * the largest counterexample are cancelled, so their computers move on to better graphs.
+ * 
+ * Graphs from the store are leased: the lease of every running task is renewed while the task runs
+ * (even if it moves to another computer), and released once the task is done. If the scheduler is
+ * lost, the leases expire and the store hands the graphs out again.
+ * 
+ * Store calls are batched: solutions found meanwhile are put in one call, graphs are leased 
+ * for all computers waiting for a task at once (the spare leases wait in a queue, and are renewed 
+ * like those of running tasks), and leases are renewed and released in one call each.
+ * A spare that waited too long, or whose graph is smaller than a solution put since it was leased,
+ * is given back to the store instead (so it is handed out by the store's ranking again).
+ * A batch of solutions the store could not be reached for is sent again.
+ * 
+ * In circulant mode long running computers search circulant graphs instead, one size per task
+ * (cycling through the sizes, as some sizes have no circulant counterexample).
+ * In portfolio mode long running computers run one independent seeded search per thread
+ * (alternating taboo and hybrid searches) instead of one parallel taboo search.
+ * 
  * @author Michael Nekrasov
  * @author Roman Kazarin
  *
@@ -36,20 +62,75 @@ public class RamseyScheduler implements Scheduler<Graph> {
 	private static final int GRAPH_SMALL_LIMIT = 31;
 	private static final int GRAPH_FINAL_LIMIT = 49;
 	private static final int GRAPH_STORE_LOOKUP_TIMEOUT = 1000;
+	private static final int GRAPH_RECYCLE_GAP = 2;
+	private static final long LEASE_RENEW_INTERVAL = 60000;
+	private static final int MAX_SOLUTIONS_PER_PUT = 64;
+	private static final long MAX_SPARE_WAIT = 10000;
+	private static final SearchBudget SHORT_BUDGET = new SearchBudget(600000, SearchBudget.UNLIMITED, SearchBudget.UNLIMITED);
+	private static final SearchBudget LONG_BUDGET = new SearchBudget(SearchBudget.UNLIMITED, SearchBudget.UNLIMITED, 1000000);
+	private static final SearchBudget CIRCULANT_BUDGET = new SearchBudget(600000, SearchBudget.UNLIMITED, SearchBudget.UNLIMITED);
 	
 	private transient Map<Integer, Proxy<Graph>> proxies;
 	private transient BlockingQueue<Result<Graph>> solutions;
 	private transient BlockingQueue<Exception> exceptions;
 	private transient BlockingQueue<Graph> solutionsToSend;
+	private transient Map<Long, Task<Graph>> checkpoints;
+	private transient BlockingQueue<Task<Graph>> shortTasksToResume;
+	private transient BlockingQueue<Task<Graph>> longTasksToResume;
+	private transient Map<Long, Proxy<Graph>> longRunningTasks;
+	private transient Map<Long, GraphLease> taskLeases;
+	private transient Map<Long, Boolean> leasesToRelease;
+	private transient Queue<GraphLease> smallLeases;
+	private transient Queue<GraphLease> largeLeases;
+	private transient Map<Long, Long> spareLeasedAt;
+	private transient AtomicLongArray solutionPutAt;
 	
 	private transient GraphStore store;	
 	private transient int solutionsFound =0;
 	private transient boolean isRunning = false;	
+	private transient long tasksGenerated = 0;
+	private transient int largestSolution = 0;
+	private transient int circulantSize = GRAPH_SMALL_LIMIT;
 	
 	private String graphStoreAddress;
+	private boolean circulant;
+	private boolean portfolio;
+	private int setCliqueSize, unsetCliqueSize;
 	
 	public RamseyScheduler(String graphStoreAddress) {
+		this(graphStoreAddress, false);
+	}
+	
+	public RamseyScheduler(String graphStoreAddress, boolean circulant) {
+		this(graphStoreAddress, circulant, Graph.DEFAULT_CLIQUE_SIZE, Graph.DEFAULT_CLIQUE_SIZE);
+	}
+	
+	/**
+	 * Create scheduler
+	 * @param graphStoreAddress RMI address of the GraphStore (holding graphs of the same R(s,t) search)
+	 * @param circulant should long running computers search only circulant graphs
+	 * @param setCliqueSize size of cliques counted among edges of color 1 (s)
+	 * @param unsetCliqueSize size of cliques counted among edges of color 0 (t)
+	 */
+	public RamseyScheduler(String graphStoreAddress, boolean circulant, int setCliqueSize, int unsetCliqueSize) {
+		this(graphStoreAddress, circulant, setCliqueSize, unsetCliqueSize, false);
+	}
+	
+	/**
+	 * Create scheduler
+	 * @param graphStoreAddress RMI address of the GraphStore (holding graphs of the same R(s,t) search),
+	 * 			or the addresses of its shards separated by ShardedGraphStore.ADDRESS_SEPARATOR
+	 * @param circulant should long running computers search only circulant graphs
+	 * @param setCliqueSize size of cliques counted among edges of color 1 (s)
+	 * @param unsetCliqueSize size of cliques counted among edges of color 0 (t)
+	 * @param portfolio should long running computers run a portfolio of seeded searches (one per thread)
+	 */
+	public RamseyScheduler(String graphStoreAddress, boolean circulant, int setCliqueSize, int unsetCliqueSize, boolean portfolio) {
+		this.portfolio = portfolio;
 		this.graphStoreAddress = graphStoreAddress;
+		this.circulant = circulant;
+		this.setCliqueSize = setCliqueSize;
+		this.unsetCliqueSize = unsetCliqueSize;
 	}
 	
 	@Override
@@ -58,6 +139,16 @@ public class RamseyScheduler implements Scheduler<Graph> {
 	@Override
 	public void start(SharedState initialState, Map<Integer, Proxy<Graph>> proxies, BlockingQueue<Result<Graph>> solutions, BlockingQueue<Exception> exceptions) {
 		this.solutionsToSend = new LinkedBlockingQueue<Graph>();
+		this.checkpoints = new ConcurrentHashMap<Long, Task<Graph>>();
+		this.shortTasksToResume = new LinkedBlockingQueue<Task<Graph>>();
+		this.longTasksToResume = new LinkedBlockingQueue<Task<Graph>>();
+		this.longRunningTasks = new ConcurrentHashMap<Long, Proxy<Graph>>();
+		this.taskLeases = new ConcurrentHashMap<Long, GraphLease>();
+		this.leasesToRelease = new ConcurrentHashMap<Long, Boolean>();
+		this.smallLeases = new ConcurrentLinkedQueue<GraphLease>();
+		this.largeLeases = new ConcurrentLinkedQueue<GraphLease>();
+		this.spareLeasedAt = new ConcurrentHashMap<Long, Long>();
+		this.solutionPutAt = new AtomicLongArray(Graph.MAX_SIZE+1);
 		this.proxies = proxies;
 		this.solutions = solutions;
 		this.exceptions = exceptions;
@@ -67,6 +158,7 @@ public class RamseyScheduler implements Scheduler<Graph> {
 		
 		new Thread(generateTasker()).start();
 		new Thread(solutionSender()).start();
+		new Thread(leaseKeeper()).start();
 	}
 
 	@Override
@@ -79,7 +171,7 @@ public class RamseyScheduler implements Scheduler<Graph> {
      */
 	private void findAndSetStore(){
 		while(isRunning) try {
-			store = (GraphStore) Naming.lookup(graphStoreAddress);
+			store = ShardedGraphStore.lookup(graphStoreAddress);
 			break;
 		} catch (MalformedURLException | RemoteException | NotBoundException e) {
 			System.err.println("Unable to connect to Graph Store at '"+graphStoreAddress+"' retrying in "+GRAPH_STORE_LOOKUP_TIMEOUT+" ms");
@@ -98,8 +190,19 @@ public class RamseyScheduler implements Scheduler<Graph> {
 				while(isRunning) for(Proxy<Graph> proxy: proxies.values()) {
 					try {
 						Task<Graph> task = generateTask(proxy);
-						if(task != null) 
-							proxy.assignTask(task);
+						if(task != null){ 
+							//noted before it is assigned, so a task lost right away is still resumed as long running
+							if(proxy.getCapabilities().isLongRunning())
+								longRunningTasks.put(task.getUID(), proxy);
+							try {
+								proxy.assignTask(task);
+							}
+							catch (ProxyStoppedException e) {
+								longRunningTasks.remove(task.getUID());
+								resumeQueue(proxy.getCapabilities().isLongRunning()).add(task);
+								throw e;
+							}
+						}
 					} 
 					catch (ProxyStoppedException e) {}				
 				}	
@@ -109,7 +212,8 @@ public class RamseyScheduler implements Scheduler<Graph> {
 
 
     /**
-     * Put a solution into the Graph Store
+     * Put solutions into the Graph Store (all solutions waiting to be sent in one call),
+     * sending a batch again if the store could not be reached
      */
 	private Runnable solutionSender() {
 		return new Runnable() {
@@ -120,12 +224,19 @@ public class RamseyScheduler implements Scheduler<Graph> {
 						try { Thread.sleep(GRAPH_STORE_LOOKUP_TIMEOUT); }
 						catch (InterruptedException e1) {}
 					
+					List<Graph> batch = new ArrayList<Graph>();
 					try {
-						Graph solution = solutionsToSend.take();
-						store.put(solution);
+						batch.add(solutionsToSend.take());
+						solutionsToSend.drainTo(batch, MAX_SOLUTIONS_PER_PUT-1);
+						boolean[] accepted = store.putAll(batch);
+						for(int i=0; i < accepted.length; i++)
+							if(accepted[i]) solutionPutAt.set(batch.get(i).size(), System.currentTimeMillis());
 					} catch (RemoteException e) {
-						System.err.println("Error accessing Graph store");
+						System.err.println("Error accessing Graph store, sending "+batch.size()+" solutions again");
 						e.printStackTrace();
+						solutionsToSend.addAll(batch);
+						try { Thread.sleep(GRAPH_STORE_LOOKUP_TIMEOUT); }
+						catch (InterruptedException e1) {}
 					} catch (InterruptedException e) {}
 					
 				}	
@@ -133,6 +244,76 @@ public class RamseyScheduler implements Scheduler<Graph> {
 		};
 	};
 
+    /**
+     * Renew the leases of running tasks, and release the leases of finished ones
+     */
+	private Runnable leaseKeeper() {
+		return new Runnable() {
+			@Override
+			public void run() {
+				while(isRunning)  {
+					try { Thread.sleep(LEASE_RENEW_INTERVAL); }
+					catch (InterruptedException e) {}
+					if(store == null) continue;
+					
+					try {
+						releaseLeases();
+						renewLeases();
+					} catch (RemoteException e) {
+						System.err.println("Error accessing Graph store");
+						e.printStackTrace();
+					}
+				}	
+			}
+		};
+	};
+
+    /**
+     * Release the leases of finished tasks (in one call)
+     * @throws RemoteException
+     */
+	private void releaseLeases() throws RemoteException{
+		List<Map.Entry<Long, Boolean>> releases = new ArrayList<Map.Entry<Long, Boolean>>(leasesToRelease.entrySet());
+		if(releases.isEmpty()) return;
+		
+		long[] leaseIds = new long[releases.size()];
+		boolean[] extended = new boolean[releases.size()];
+		for(int i=0; i < leaseIds.length; i++) {
+			leaseIds[i] = releases.get(i).getKey();
+			extended[i] = releases.get(i).getValue();
+		}
+		store.releaseAll(leaseIds, extended);
+		for(long leaseId: leaseIds)
+			leasesToRelease.remove(leaseId);
+	}
+	
+    /**
+     * Renew the leases of running tasks and of spare leased graphs (in one call),
+     * and forget the leases that were lost
+     * @throws RemoteException
+     */
+	private void renewLeases() throws RemoteException{
+		List<GraphLease> held = new ArrayList<GraphLease>(taskLeases.values());
+		held.addAll(smallLeases);
+		held.addAll(largeLeases);
+		if(held.isEmpty()) return;
+		
+		long[] leaseIds = new long[held.size()];
+		for(int i=0; i < leaseIds.length; i++)
+			leaseIds[i] = held.get(i).getId();
+		boolean[] renewed = store.renewAll(leaseIds, GraphStore.DEFAULT_LEASE_DURATION);
+		
+		for(int i=0; i < renewed.length; i++) {
+			if(renewed[i]) continue;
+			GraphLease lost = held.get(i);
+			Log.verbose("Lost "+lost);
+			taskLeases.values().remove(lost);
+			smallLeases.remove(lost);
+			largeLeases.remove(lost);
+			spareLeasedAt.remove(lost.getId());
+		}
+	}
+	
     /**
      * Generate a task given the specification of a given proxy
      * @param proxy a specific proxy
@@ -141,29 +322,51 @@ public class RamseyScheduler implements Scheduler<Graph> {
 		Capabilities spec = proxy.getCapabilities();
 		if(spec.isOnSpace()) return null; //dont schedule on space
 		if(proxy.getNumQueued() > 1) return null;
+		
+		//searches interrupted by a lost computer go first (to a computer of the same longevity)
+		Task<Graph> resumed = resumeQueue(spec.isLongRunning()).poll();
+		if(resumed != null){
+			Log.verbose("Resuming "+resumed);
+			return resumed;
+		}
 
         try {
             if(!spec.isLongRunning()){
-            	Graph graph = store.getBestUnasigned(GRAPH_SMALL_PREFERED);
+            	GraphLease lease = nextLease(smallLeases, GRAPH_SMALL_PREFERED, false);
+            	Graph graph = lease == null ? null : lease.getGraph();
             	
             	Log.verbose("Asking for Best Graph >= size "+GRAPH_SMALL_PREFERED+" "+(graph==null?"but none recieved!":"and got Graph Size "+graph.size()));
-            	if(graph != null)
-            		graph = graph.extendRandom();
+            	if(isOfThisSearch(graph))
+            		graph = new GraphExtender(graph).extend();
             	else
-            		graph = Graph.generateRandom(GRAPH_START_SIZE);
+            		graph = Graph.generateRandom(GRAPH_START_SIZE, setCliqueSize, unsetCliqueSize);
+            	
+            	//short lived computers can not afford a full neighbourhood scan per step
+            	return withLease(withNewUid(new RamseyTask(graph, GRAPH_MIN_USEFUL_SIZE, GRAPH_SMALL_LIMIT, new AnnealingSearch(), SHORT_BUDGET)), lease);
+            }
+            else if(circulant){
+            	int size = circulantSize;
+            	circulantSize = size < GRAPH_FINAL_LIMIT ? size+1 : GRAPH_SMALL_LIMIT;
             	
-            	return new RamseyTask(graph, GRAPH_MIN_USEFUL_SIZE, GRAPH_SMALL_LIMIT);
+            	//circulant graphs do not extend to circulant graphs, so every size is searched from scratch
+            	Graph graph = Graph.generateRandom(size, setCliqueSize, unsetCliqueSize);
+            	return withNewUid(new RamseyTask(graph, GRAPH_MIN_USEFUL_SIZE, size, new CirculantSearch(), CIRCULANT_BUDGET));
             }
             else{
-            	Graph graph = store.getBestUnasigned();
+            	GraphLease lease = nextLease(largeLeases, Integer.MAX_VALUE, true);
+            	Graph graph = lease == null ? null : lease.getGraph();
             	Log.verbose("Asking for Best Graph "+(graph==null?"but none recieved!":"and got Graph Size "+graph.size()));
             	
-            	if(graph != null)
-            		graph = graph.extendRandom();
+            	if(isOfThisSearch(graph))
+            		graph = new GraphExtender(graph).extend();
             	else 
-            		graph = Graph.generateRandom(GRAPH_START_SIZE);
+            		graph = Graph.generateRandom(GRAPH_START_SIZE, setCliqueSize, unsetCliqueSize);
             	
-            	return new RamseyTask(graph, GRAPH_MIN_USEFUL_SIZE,  GRAPH_FINAL_LIMIT);
+            	//one big task per long running computer, so a portfolio uses all of its threads
+            	//(a single taboo search stays sequential: its parallel scan has not been faster so far)
+            	SearchStrategy strategy = portfolio ? portfolioSearch(spec.getNumberOfThreads())
+            			: new TabooSearch();
+            	return withLease(withNewUid(new RamseyTask(graph, GRAPH_MIN_USEFUL_SIZE,  GRAPH_FINAL_LIMIT, strategy, LONG_BUDGET)), lease);
             }
             
         } catch (RemoteException e) {
@@ -173,7 +376,113 @@ public class RamseyScheduler implements Scheduler<Graph> {
 
         return null;
 	}
+	
+    /**
+     * Take a spare leased graph (giving back stale ones), or lease one for every computer 
+     * (of the same longevity) waiting for a task
+     * @param spare leases of graphs for computers of this longevity
+     * @param startingAt maximum size of graph to lease
+     * @param longRunning longevity of computers
+     * @return the lease, or null if the store has no graph
+     * @throws RemoteException
+     */
+	private GraphLease nextLease(Queue<GraphLease> spare, int startingAt, boolean longRunning) throws RemoteException{
+		GraphLease lease;
+		while((lease = spare.poll()) != null) {
+			Long leasedAt = spareLeasedAt.remove(lease.getId());
+			if(leasedAt != null && !isStale(lease.getGraph(), leasedAt, startingAt)) return lease;
+			
+			Log.verbose("Giving back spare "+lease);
+			store.giveBack(lease.getId());
+		}
+		
+		long now = System.currentTimeMillis();
+		for(GraphLease leased: store.leaseMany(startingAt, waitingComputers(longRunning), GraphStore.DEFAULT_LEASE_DURATION)) {
+			spareLeasedAt.put(leased.getId(), now);
+			spare.add(leased);
+		}
+		lease = spare.poll();
+		if(lease != null) spareLeasedAt.remove(lease.getId());
+		return lease;
+	}
+	
+    /**
+     * Is a spare leased graph stale: did it wait too long (the store may have better graphs from 
+     * other schedulers by now), or was a larger solution (that could be leased instead) put since it was leased
+     * @param graph of spare lease
+     * @param leasedAt time it was leased
+     * @param startingAt maximum size of graph to lease
+     * @return true if stale
+     */
+	private boolean isStale(Graph graph, long leasedAt, int startingAt){
+		if(System.currentTimeMillis() - leasedAt > MAX_SPARE_WAIT) return true;
+		for(int size=graph.size()+1; size <= Math.min(startingAt, Graph.MAX_SIZE); size++)
+			if(solutionPutAt.get(size) > leasedAt) return true;
+		return false;
+	}
+	
+    /**
+     * Count computers (of a longevity) that are about to be given a task
+     * @param longRunning longevity of computers
+     * @return number of computers (at least 1)
+     */
+	private int waitingComputers(boolean longRunning){
+		int waiting = 0;
+		for(Proxy<Graph> proxy: proxies.values()){
+			Capabilities spec = proxy.getCapabilities();
+			if(!spec.isOnSpace() && spec.isLongRunning() == longRunning && proxy.getNumQueued() <= 1)
+				waiting++;
+		}
+		return Math.max(1, waiting);
+	}
+	
+    /**
+     * Create a portfolio of single threaded searches, alternating taboo and hybrid searches
+     * @param threads number of searches (one per thread)
+     * @return the portfolio
+     */
+	private static SearchStrategy portfolioSearch(int threads){
+		List<SearchStrategy> members = new ArrayList<SearchStrategy>();
+		for(int m=0; m < Math.max(1, threads); m++)
+			members.add(m % 2 == 0 ? new TabooSearch() : new HybridSearch());
+		return new PortfolioSearch(members);
+	}
+	
+    /**
+     * Is the graph (from the store) a counterexample for the same R(s,t) this scheduler searches for
+     * @param graph to check (may be null)
+     * @return true if it is
+     */
+	private boolean isOfThisSearch(Graph graph){
+		return graph != null && graph.cliqueSize(true) == setCliqueSize && graph.cliqueSize(false) == unsetCliqueSize;
+	}
+	
+    /**
+     * Give a new task its own UID (checkpoints are tracked by it)
+     * @param task to identify
+     * @return the task
+     */
+	private Task<Graph> withNewUid(Task<Graph> task){
+		task.setUid(++tasksGenerated);
+		return task;
+	}
 
+    /**
+     * Keep the lease of the graph a task searches from, until the task is done
+     * (a graph of another search is released right away)
+     * @param task searching from the graph
+     * @param lease of the graph (or null if none)
+     * @return the task
+     */
+	private Task<Graph> withLease(Task<Graph> task, GraphLease lease){
+		if(lease == null) return task;
+		if(isOfThisSearch(lease.getGraph()))
+			taskLeases.put(task.getUID(), lease);
+		else
+			leasesToRelease.put(lease.getId(), false);
+		return task;
+	}
+	
     /**
      * Either we get a counterexample or an exception
      * @param result a specific proxy
@@ -190,17 +499,59 @@ public class RamseyScheduler implements Scheduler<Graph> {
 			Log.verbose("Exception: "+result.getException().getMessage());
 		}
 		
-		//If Single value pass it on to target	
-		if(result.hasValue() && result.getValue().size() >= GRAPH_MIN_USEFUL_SIZE){			
+		//Keep the latest checkpoint of a running task, forget it once the task is done
+		if(result.hasTasks() && !result.isTaskCompleted()){
+			for(Task<Graph> checkpoint: result.getTasks())
+				checkpoints.put(checkpoint.getUID(), checkpoint);
+		}
+		//If Single counterexample pass it on to target (tasks out of budget return unsolved graphs,
+		//and the graph a task returns only tells if it extended its lease)
+		Graph graph = result.getValue();
+		if(result.isTaskCompleted()){
+			checkpoints.remove(result.getTaskCreatorId());
+			longRunningTasks.remove(result.getTaskCreatorId());
+			
+			GraphLease lease = taskLeases.remove(result.getTaskCreatorId());
+			if(lease != null) {
+				boolean extended = result.hasValue() && graph.isSolved() && graph.size() > lease.getGraph().size();
+				leasesToRelease.put(lease.getId(), extended);
+			}
+		}
+		
+		//a finished task returns a solution it already reported as a partial result
+		if(!result.isTaskCompleted() && result.hasValue() && graph.isSolved() && graph.size() >= GRAPH_MIN_USEFUL_SIZE){			
 			solutions.add(result);
-			solutionsToSend.add(result.getValue());
+			solutionsToSend.add(graph);
 			solutionsFound++;
+			
+			if(graph.size() > largestSolution){
+				largestSolution = graph.size();
+				recycleTasksBelow(largestSolution - GRAPH_RECYCLE_GAP);
+			}
+		}
+	}
+	
+    /**
+     * Cancel long running tasks that are working on graphs smaller than given size 
+     * (as of their latest checkpoint), so their computers get a better graph from the store
+     * @param size to compare with
+     */
+	private void recycleTasksBelow(int size){
+		for(Map.Entry<Long, Proxy<Graph>> entry: longRunningTasks.entrySet()){
+			Task<Graph> checkpoint = checkpoints.get(entry.getKey());
+			if(!(checkpoint instanceof RamseyTask) || ((RamseyTask)checkpoint).getGraphSize() >= size) 
+				continue;
+			
+			Log.verbose("Recycling "+checkpoint+" (largest solution is "+largestSolution+")");
+			try {
+				entry.getValue().cancelTask(entry.getKey());
+			} catch (ProxyStoppedException e) {}
 		}
 	}
 	
 	@Override
 	public String toString() {
-		return "Ramsey(5,5) Scheduler";
+		return "Ramsey("+setCliqueSize+","+unsetCliqueSize+") Scheduler"+(circulant?" (circulant)":"")+(portfolio?" (portfolio)":"");
 	}
 	
 	public String statusString() {
@@ -215,5 +566,21 @@ public class RamseyScheduler implements Scheduler<Graph> {
 	public void updateState(SharedState state) {}
 
 	@Override
-	public void rescheduleTasks(Collection<Task<Graph>> leftoverTasks) {};
+	public void rescheduleTasks(Collection<Task<Graph>> leftoverTasks) {
+		for(Task<Graph> task: leftoverTasks){
+			Task<Graph> checkpoint = checkpoints.remove(task.getUID());
+			boolean longRunning = longRunningTasks.remove(task.getUID()) != null;
+			resumeQueue(longRunning).add(checkpoint != null? checkpoint : task);
+		}
+	};
+	
+	/**
+	 * Get the tasks to resume on computers of a longevity
+	 * (a long search would not finish on a short lived computer, and a short one would waste a long running computer)
+	 * @param longRunning longevity of computers
+	 * @return queue of tasks
+	 */
+	private BlockingQueue<Task<Graph>> resumeQueue(boolean longRunning){
+		return longRunning ? longTasksToResume : shortTasksToResume;
+	}
 }
@@ -1,27 +1,64 @@
 package ramsey;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A Graph Store that saves counterexamples for a Ramsey Search
  * Can be saved and loaded from file.
  * 
+ * Once a log is opened, every accepted graph is appended to it, and put() returns only once
+ * the graph is on disk (concurrent puts share an fsync). The whole bank is only written
+ * when the log has grown large enough to compact into a new snapshot.
+ * 
+ * Graphs are never removed from the store, and every size keeps them in the order they were added,
+ * so the first n graphs of every size are a consistent view of the store that later puts do not change.
+ * A snapshot therefore holds every stripe only to note the counts of its size (after rolling the log over),
+ * a few microseconds, and writes that view while puts and requests go on.
+ * 
+ * Unassigned graphs are handed out from a GraphFrontier, by a pluggable score
+ * (by default largest first, until failures make a smaller graph more promising).
+ * 
+ * Graphs handed out under a lease go back to the unassigned graphs if the lease is not renewed
+ * in time (expired leases are collected whenever a graph is leased), or if they are released
+ * without a larger counterexample found from them (counted as a failure, that the score ranks down).
+ * 
+ * The store is striped by graph size: adding a graph (and its isomorph check) and reading graphs
+ * from the bank only lock the stripe of their size, so requests for graphs of different sizes do not
+ * wait for each other. Handing out the best graph scans the sizes without locking (see GraphFrontier),
+ * leases are only locked one at a time, and contains() takes no lock.
+ * 
+ * A store can hold only a range of graph sizes, as one shard of a ShardedGraphStore
+ * (run several stores, each with its own port, name, bank and log).
+ * 
+ * Snapshots are GraphBank files, which are memory mapped when loaded: a graph of the bank is
+ * only turned into an object when it is handed out (largest first), or when a graph of its size
+ * is put (as the isomorph check needs all of them).
+ * The bank of an older store (a serialized map of graphs) still loads, and is kept as a copy
+ * (LEGACY_EXTENSION) when the first snapshot replaces it.
+ * 
  * @author Michael Nekrasov
  * @author Roman Kazarin
  *
@@ -30,24 +67,63 @@ public class RamseyStore extends UnicastRemoteObject implements Serializable, It
 
 	private static final long serialVersionUID = 8867753203624856389L;
 	private static final long CHECKPOINT_SAVE_INTERVAL= 30000;
+	private static final long COMPACT_LOG_SIZE = 1 << 20;
 	
 	public static final String BANK_FILENAME = "bank.save";
+	public static final String LOG_FILENAME = "bank.log";
 	public static final String TEMP_EXTENSION = ".tmp";
+	public static final String ROLLED_EXTENSION = ".old";
+	public static final String LEGACY_EXTENSION = ".legacy";
 
 	private transient Queue<Graph>[] hierarchy;
-	private transient Queue<Graph>[] unassigned;
+	private transient AtomicIntegerArray hierarchySize;
+	private transient Object[] stripes;
+	private transient GraphFrontier frontier;
+	private transient ConcurrentMap<Long, List<Graph>> isomorphIndex = new ConcurrentHashMap<>();
+	private transient GraphLog log;
+	private transient File logFile;
+	private transient String bankFilename = BANK_FILENAME;
+	private transient final Object snapshotLock = new Object();
+	private transient long lastSnapshotPause;
+	private transient Map<Long, GraphLease> leases = new ConcurrentHashMap<>();
+	private transient AtomicLong leasesGranted = new AtomicLong();
+	
+	/** Bank the store was loaded from (or null), and the number of its graphs of each size already read */
+	private transient GraphBank bank;
+	private transient AtomicIntegerArray bankRead;
+	/** Bank of an older store the store was loaded from, until a snapshot has kept a copy of it */
+	private transient File legacyBankFile;
 	
 	private Map<UUID,Graph> map = new ConcurrentHashMap<>();
+	private int minSize;
 	 
-	@SuppressWarnings("unchecked")
 	public RamseyStore(int maxSize) throws RemoteException {
+		this(maxSize, new DefaultFrontierScore());
+	}
+	
+	public RamseyStore(int maxSize, FrontierScore score) throws RemoteException {
+		this(0, maxSize, score);
+	}
+	
+	/**
+	 * Create empty store
+	 * @param minSize smallest graph size (smaller graphs are not accepted)
+	 * @param maxSize largest graph size
+	 * @param score to choose the graph to hand out by
+	 * @throws RemoteException
+	 */
+	@SuppressWarnings("unchecked")
+	public RamseyStore(int minSize, int maxSize, FrontierScore score) throws RemoteException {
 		super();
+		this.minSize = minSize;
+		frontier = new GraphFrontier(maxSize, score);
 		hierarchy = new ConcurrentLinkedQueue[maxSize+1];
-		unassigned = new ConcurrentLinkedQueue[maxSize+1];
+		hierarchySize = new AtomicIntegerArray(maxSize+1);
+		stripes = new Object[maxSize+1];
 
 		for(int i=0; i<hierarchy.length; i++){
 			hierarchy[i]= new ConcurrentLinkedQueue<Graph>();
-			unassigned[i]= new ConcurrentLinkedQueue<Graph>();
+			stripes[i] = new Object();
 		}
 	}
 
@@ -56,21 +132,94 @@ public class RamseyStore extends UnicastRemoteObject implements Serializable, It
      * @param graph a graph instnace
      */
 	@Override
-	public synchronized boolean put(Graph graph){
-		Queue<Graph> set = hierarchy[graph.size()];
-		
-		//Do Isomorph check
-		for(Graph g: set) if(g.isIsomorphOf(graph)) return false;
-
-		map.put(graph.getId(),graph);
-		hierarchy[graph.size()].add(graph);
-		unassigned[graph.size()].add(graph);
+	public boolean put(Graph graph){
+		long sequence = accept(graph);
+		if(sequence < 0) return false;
 		
+		awaitLogged(sequence);
 		return true;
 	}
 	
 	@Override
-	public synchronized Graph getBestUnasigned(){
+	public boolean[] putAll(List<Graph> graphs){
+		boolean[] accepted = new boolean[graphs.size()];
+		long last = 0;
+		for(int i=0; i < accepted.length; i++) {
+			long sequence = accept(graphs.get(i));
+			accepted[i] = sequence >= 0;
+			last = Math.max(last, sequence);
+		}
+		
+		//the whole batch goes to disk in one write
+		awaitLogged(last);
+		return accepted;
+	}
+	
+	/**
+	 * Wait for a log record (and all before it) to be on disk
+	 * (outside the store, so puts can share an fsync)
+	 * @param sequence number of record (0 for none)
+	 */
+	private void awaitLogged(long sequence){
+		if(log == null || sequence <= 0) return;
+		try {
+			log.sync(sequence);
+		}
+		catch (IOException e) {
+			System.err.println("Error Logging Graph (kept until next snapshot)");
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Add graph to the store, and append it to the log
+	 * @param graph to add
+	 * @return sequence number of log record (0 if not logged), or -1 if not accepted
+	 */
+	private long accept(Graph graph){
+		//Only accept real counterexamples
+		if(graph.size() < minSize || graph.size() >= hierarchy.length || graph.cliqueCountParallel() != 0) return -1;
+		long key = graph.invariantHash();
+		
+		//isomorphs have the same size, so only graphs of that size have to wait
+		synchronized (stripes[graph.size()]) {
+			//graphs of the same size still in the bank could be isomorphs
+			readAllFromBank(graph.size());
+			
+			List<Graph> bucket = isomorphIndex.get(key);
+			
+			//Do Isomorph check (only graphs with same invariants can be isomorphs)
+			if(bucket != null) 
+				for(Graph g: bucket) if(g.isIsomorphOf(graph)) return -1;
+	
+			map.put(graph.getId(),graph);
+			index(graph, key);
+			frontier.add(graph);
+			
+			if(log != null) try {
+				return log.append(graph);
+			}
+			catch (IOException e) {
+				System.err.println("Error Logging Graph (kept until next snapshot)");
+			}
+			return 0;
+		}
+	}
+	
+	@Override
+	public int getMinSize(){
+		return minSize;
+	}
+	
+	@Override
+	public int getMaxSize(){
+		return hierarchy.length-1;
+	}
+	
+	@Override
+	public Graph getBestUnasigned(){
 		return getBestUnasigned(Integer.MAX_VALUE);
 	}
 
@@ -79,116 +228,493 @@ public class RamseyStore extends UnicastRemoteObject implements Serializable, It
      * @param startingAt starting size
      */
 	@Override
-	public synchronized Graph getBestUnasigned(int startingAt){
-		if(startingAt > unassigned.length-1) 
-			startingAt = unassigned.length-1;
+	public Graph getBestUnasigned(int startingAt){
+		if(startingAt > hierarchy.length-1) 
+			startingAt = hierarchy.length-1;
 		
-		//Search for best starting point
+		//graphs still in the bank join the frontier one at a time, when their size has none left
+		//(only sizes with graphs left in the bank are locked)
 		for(int size=startingAt; size>=0; size--){
-			if(unassigned[size].size() > 0)
-				return unassigned[size].poll();
+			if(unread(size) == 0 || !frontier.isEmpty(size)) continue;
+			synchronized (stripes[size]) {
+				if(unread(size) > 0 && frontier.isEmpty(size)) {
+					Graph graph = readFromBank(size);
+					if(graph != null) frontier.add(graph);
+				}
+			}
+		}
+		
+		Graph graph = frontier.poll(startingAt);
+		if(graph != null)
+			graph.assign();
+		return graph;
+	}
+	
+	@Override
+	public GraphLease lease(int startingAt, long duration){
+		expireLeases();
+		
+		Graph graph = getBestUnasigned(startingAt);
+		if(graph == null) return null;
+		
+		GraphLease lease = new GraphLease(leasesGranted.incrementAndGet(), graph, System.currentTimeMillis() + duration);
+		leases.put(lease.getId(), lease);
+		return lease;
+	}
+	
+	@Override
+	public List<GraphLease> leaseMany(int startingAt, int count, long duration){
+		List<GraphLease> leased = new ArrayList<GraphLease>();
+		while(leased.size() < count) {
+			GraphLease lease = lease(startingAt, duration);
+			if(lease == null) break;
+			leased.add(lease);
 		}
-		//could not find one
-		return null;
+		return leased;
 	}
 	
 	@Override
-	public synchronized boolean contains(UUID graphId){
+	public boolean renew(long leaseId, long duration){
+		GraphLease lease = leases.get(leaseId);
+		if(lease == null) return false;
+		
+		//a lease is only locked against expiring at the same time
+		synchronized (lease) {
+			if(!lease.isExpired(System.currentTimeMillis())) {
+				lease.setDeadline(System.currentTimeMillis() + duration);
+				return true;
+			}
+		}
+		expireLeases();
+		return false;
+	}
+	
+	@Override
+	public void release(long leaseId, boolean extended){
+		GraphLease lease = leases.remove(leaseId);
+		if(lease == null) return;
+		
+		Graph graph = lease.getGraph();
+		graph.unassign();
+		if(extended) return;
+		
+		//the graph may still extend, but goes behind graphs that did not fail as often
+		graph.failedToFindSolution();
+		frontier.add(graph);
+	}
+	
+	@Override
+	public void giveBack(long leaseId){
+		GraphLease lease = leases.remove(leaseId);
+		if(lease == null) return;
+		
+		lease.getGraph().unassign();
+		frontier.add(lease.getGraph());
+	}
+	
+	@Override
+	public boolean[] renewAll(long[] leaseIds, long duration){
+		boolean[] renewed = new boolean[leaseIds.length];
+		for(int i=0; i < leaseIds.length; i++)
+			renewed[i] = renew(leaseIds[i], duration);
+		return renewed;
+	}
+	
+	@Override
+	public void releaseAll(long[] leaseIds, boolean[] extended){
+		for(int i=0; i < leaseIds.length; i++)
+			release(leaseIds[i], extended[i]);
+	}
+	
+	/**
+	 * Put the graphs of all expired leases back with the unassigned graphs
+	 * (a lease expired by another thread at the same time is only put back once)
+	 */
+	private void expireLeases(){
+		long now = System.currentTimeMillis();
+		for(GraphLease lease: leases.values()) {
+			synchronized (lease) {
+				if(!lease.isExpired(now) || !leases.remove(lease.getId(), lease)) continue;
+			}
+			
+			Graph graph = lease.getGraph();
+			graph.unassign();
+			frontier.add(graph);
+			System.out.println("Lease "+lease.getId()+" expired, Graph Size "+graph.size()+" is unassigned again");
+		}
+	}
+	
+	@Override
+	public boolean contains(UUID graphId){
+		//a graph read from the bank meanwhile is in the map before it leaves the unread graphs
+		long position = bank == null ? -1 : bank.find(graphId);
+		if(position >= 0 && GraphBank.sizeAt(position) < hierarchy.length
+				&& GraphBank.indexAt(position) >= bankRead.get(GraphBank.sizeAt(position))) return true;
 		return map.containsKey(graphId);
 	}
 	
+	@Override
+	public boolean[] containsAll(List<UUID> graphIds){
+		boolean[] present = new boolean[graphIds.size()];
+		for(int i=0; i < present.length; i++)
+			present[i] = contains(graphIds.get(i));
+		return present;
+	}
+	
     /**
-     * Save graph store to disk
+     * Save graph store to disk (compacting the log into the snapshot),
+     * holding every stripe only while noting how many graphs of its size the snapshot has
+     * @return number of graphs saved
+     * @throws IOException if the snapshot could not be written or moved in place (the previous one, and the log, are kept)
      */
-	public synchronized void save() throws IOException{
-		File bankFile = new File(BANK_FILENAME);
-		File bankTempFile = new File(BANK_FILENAME+TEMP_EXTENSION);
+	public int save() throws IOException{
+		synchronized (snapshotLock) {
+			File bankFile = new File(bankFilename);
+			File bankTempFile = new File(bankFilename+TEMP_EXTENSION);
+			
+			//graphs put after this go to the new log, and are not in the snapshot
+			//(a graph logged before the roll over is counted, as it was indexed before it was logged)
+			long start = System.nanoTime();
+			if(log != null && !rolledLogFile().exists())
+				log.rollOver(rolledLogFile());
+			
+			int[] sizes = new int[hierarchy.length];
+			GraphBank bankCopy = bank;
+			int[] bankReadCopy = bankCopy == null ? null : new int[hierarchy.length];
+			for(int size=0; size < sizes.length; size++) {
+				//graphs read from the bank meanwhile must be counted either in the store or in the bank
+				synchronized (stripes[size]) {
+					sizes[size] = hierarchySize.get(size);
+					if(bankReadCopy != null) bankReadCopy[size] = bankRead.get(size);
+				}
+			}
+			lastSnapshotPause = System.nanoTime() - start;
+			
+			int saved = 0;
+			List<Graph>[] graphs = newLists(sizes.length);
+			for(int size=0; size < sizes.length; size++) {
+				Iterator<Graph> added = hierarchy[size].iterator();
+				while(graphs[size].size() < sizes[size])
+					graphs[size].add(added.next());
+				saved += sizes[size] + (bankCopy == null ? 0 : bankCopy.count(size) - bankReadCopy[size]);
+			}
+			
+			//graphs not read from the bank are copied record by record
+			GraphBank.write(bankTempFile, graphs, bankCopy, bankReadCopy);
+	
+			//an older store can still read its own bank
+			if(legacyBankFile != null) {
+				File copy = new File(legacyBankFile.getPath()+LEGACY_EXTENSION);
+				if(legacyBankFile.exists() && !copy.exists())
+					Files.copy(legacyBankFile.toPath(), copy.toPath());
+				legacyBankFile = null;
+			}
+	
+			//Move temp to permanent (in one step, so a crash leaves either the old or the new snapshot)
+			Files.move(bankTempFile.toPath(), bankFile.toPath(),
+					StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		    
+		    //the snapshot has all graphs of the rolled over log (kept if the move failed)
+		    if(logFile != null)
+		    	rolledLogFile().delete();
+		    return saved;
+		}
+	}
+	
+	/**
+	 * Set the file snapshots are saved to (BANK_FILENAME unless set, or the file the store was loaded from)
+	 * @param filename of bank
+	 */
+	public void setBankFilename(String filename){
+		bankFilename = filename;
+	}
+	
+	/**
+	 * Get the file snapshots are saved to
+	 * @return filename of bank
+	 */
+	public String getBankFilename(){
+		return bankFilename;
+	}
+	
+	/**
+	 * Get how long the last snapshot held the store
+	 * @return time in nanoseconds
+	 */
+	public long getLastSnapshotPause(){
+		return lastSnapshotPause;
+	}
+	
+	/**
+	 * Replay a log left by a previous run into the store, and start logging every accepted graph to it
+	 * (a replayed log is first compacted into a new snapshot)
+	 * @param filename of the log
+	 * @return number of graphs replayed
+	 * @throws IOException
+	 */
+	public int openLog(String filename) throws IOException{
+		logFile = new File(filename);
 		
-		ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(bankTempFile));
+		int replayed = 0;
+		for(File file: new File[]{rolledLogFile(), logFile})
+			for(Graph graph: GraphLog.replay(file))
+				if(restore(graph)) replayed++;
 		
-		Map<UUID,Graph> mapCopy;
-		synchronized (map) {
-			mapCopy = new ConcurrentHashMap<>(map);
+		if(replayed > 0 || rolledLogFile().exists()) {
+			save();
+			logFile.delete();
 		}
-		out.writeObject(mapCopy);
-		
-		out.close();
-
-		//Move temp to permanent
-	    bankFile.delete();
-	    bankTempFile.renameTo(bankFile);
+		log = new GraphLog(logFile);
+		return replayed;
+	}
+	
+	/**
+	 * Has the log grown large enough to be compacted into a new snapshot (or is there no log)
+	 * @return true if save() should be called
+	 */
+	public boolean needsCompaction(){
+		return log == null || log.length() >= COMPACT_LOG_SIZE;
+	}
+	
+	private File rolledLogFile(){
+		return new File(logFile.getPath()+ROLLED_EXTENSION);
 	}
 
     /**
-     * Load graph store from disk
+     * Load graph store from disk (a bank file is only mapped, its graphs are read when needed)
      * @param filename name of file
      * @param maxSize size of graph store
+     * @return the store, or null if there is no such file
+     * @throws IOException if the file exists but can not be read
+     */
+	public static RamseyStore load( String filename, int maxSize ) throws IOException{
+		return load(filename, 0, maxSize);
+	}
+
+    /**
+     * Load graph store (holding a range of sizes) from disk
+     * @param filename name of file (snapshots are saved to it too)
+     * @param minSize smallest graph size
+     * @param maxSize largest graph size
+     * @return the store, or null if there is no such file
+     * @throws IOException if the file exists but can not be read
+     * (a new store must not be started in its place, as its first snapshot would overwrite the file)
      */
 	@SuppressWarnings("unchecked")
-	public static RamseyStore load( String filename, int maxSize ) throws RemoteException{
+	public static RamseyStore load( String filename, int minSize, int maxSize ) throws IOException{
 		File bankFile = new File(filename);
+		if(!bankFile.exists()) return null;
+		
+		RamseyStore bank = new RamseyStore(minSize, maxSize, new DefaultFrontierScore());
+		bank.setBankFilename(filename);
 		
+		GraphBank mapped = GraphBank.open(bankFile);
+		if(mapped != null) {
+			bank.bank = mapped;
+			bank.bankRead = new AtomicIntegerArray(maxSize+1);
+			return bank;
+		}
+		
+		//serialized map of an older store (its graphs may have the old Graph layout)
+		Map<UUID,Graph> saved;
+		ObjectInputStream in = new LegacyGraphInputStream(new BufferedInputStream(new FileInputStream(bankFile)));
 		try {
-			RamseyStore bank = new RamseyStore(maxSize);
-			
-			ObjectInputStream in = new ObjectInputStream(new FileInputStream(bankFile));
-			bank.map = (ConcurrentHashMap<UUID,Graph>)in.readObject();
+			saved = (Map<UUID,Graph>)in.readObject();
+		}
+		catch (ClassNotFoundException | ClassCastException e) {
+			throw new IOException("Not a bank: "+filename, e);
+		}
+		finally {
 			in.close();
+		}
 
-			for(Graph g: bank.map.values()){
-				bank.hierarchy[g.size()].add(g);
-				bank.unassigned[g.size()].add(g);
-			}
-			return bank;
+		for(Graph g: saved.values()) {
+			if(g.size() < minSize || g.size() > maxSize)
+				throw new IOException("Bank has Graph of Size "+g.size()+", outside of store: "+filename);
+			bank.restore(g);
+		}
+		bank.legacyBankFile = bankFile;
+		return bank;
+	}
+
+	/**
+	 * Add a graph that the store already accepted before (from a snapshot or log)
+	 * @param graph to add
+	 * @return false if the store already has it
+	 */
+	private boolean restore(Graph graph){
+		synchronized (stripes[graph.size()]) {
+			if(contains(graph.getId())) return false;
+			map.put(graph.getId(), graph);
+			index(graph, graph.invariantHash());
+			frontier.add(graph);
+			return true;
+		}
+	}
+	
+	/**
+	 * Add graph to size hierarchy and isomorph index
+	 * (graph is compacted, as the store does not search on it)
+	 * The caller holds the stripe of the graph's size.
+	 * @param graph to index
+	 * @param key invariant hash of the graph
+	 */
+	private void index(Graph graph, long key){
+		graph.compact();
+		hierarchy[graph.size()].add(graph);
+		hierarchySize.incrementAndGet(graph.size());
+		
+		//graphs of other sizes (other stripes) can share a bucket
+		List<Graph> bucket = isomorphIndex.get(key);
+		if(bucket == null) {
+			List<Graph> created = new CopyOnWriteArrayList<Graph>();
+			bucket = isomorphIndex.putIfAbsent(key, created);
+			if(bucket == null) bucket = created;
+		}
+		bucket.add(graph);
+	}
+	
+	/**
+	 * Number of graphs of a size in the bank, that were not read yet
+	 * @param size of graphs
+	 * @return number of graphs
+	 */
+	private int unread(int size){
+		return bank == null ? 0 : bank.count(size) - bankRead.get(size);
+	}
+	
+	/**
+	 * Read the next graph of a size from the bank, and add it to the store (but not to the frontier)
+	 * The caller holds the stripe of the size.
+	 * @param size of graph
+	 * @return the graph, or null if its record could not be read
+	 */
+	private Graph readFromBank(int size){
+		int index = bankRead.get(size);
+		try {
+			Graph graph = bank.read(size, index);
+			map.put(graph.getId(), graph);
+			index(graph, graph.invariantHash());
+			return graph;
 		}
-		catch (IOException | ClassNotFoundException e) {
+		catch (IOException e) {
+			//the next snapshot only copies the records after it
+			System.err.println("Error Reading Graph "+bank.id(size, index)+" of size "+size+" from Bank (corrupt record, the graph is lost)");
 			return null;
 		}
+		finally {
+			bankRead.set(size, index+1);
+		}
 	}
-
+	
+	/**
+	 * Read all remaining graphs of a size from the bank into the store (and the frontier)
+	 * @param size of graphs
+	 */
+	private void readAllFromBank(int size){
+		synchronized (stripes[size]) {
+			while(unread(size) > 0) {
+				Graph graph = readFromBank(size);
+				if(graph != null)
+					frontier.add(graph);
+			}
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static List<Graph>[] newLists(int length){
+		List<Graph>[] lists = new List[length];
+		for(int i=0; i < length; i++)
+			lists[i] = new ArrayList<Graph>();
+		return lists;
+	}
+	
+	/**
+	 * Iterate over all graphs (reading the whole bank)
+	 */
 	@Override
 	public Iterator<Graph> iterator() {
+		for(int size=0; size < hierarchy.length; size++)
+			readAllFromBank(size);
 		return map.values().iterator();
 	}
 	
 	public String contentsReportAsString(){
-		String out = "------------------------------------ Size:"+map.size()+" ------------------------------------\n";
+		int total = map.size();
+		for(int size=0; size < hierarchy.length; size++)
+			total += unread(size);
+		String out = "------------------------------------ Size:"+total+" ------------------------------------\n";
 		
 		int i=0;
 		while(i<hierarchy.length){
-			out+=i+":\t"+(hierarchy[i].size()<=0?"-":hierarchy[i].size())+"\t";
+			int count = hierarchySize.get(i) + unread(i);
+			out+=i+":\t"+(count<=0?"-":count)+"\t";
 			if(i%5==4) out+="\n";
 			i++;
 		}
+		out += "Leased: "+leases.size()+"\n";
 		out += "--------------------------------------------------------------------------------\n";
 		return out;
 	}
 	
 	/* ------------ Main Method ------------ */
 	private static final int RAMSEY_STORE_SIZE = 49;
+	
+	/**
+	 * Run a store (by default of all sizes, on the default port and name)
+	 * @param args port, name, smallest and largest graph size, bank file, log file
+	 */
 	public static void main(String[] args) throws RemoteException {	
+		int port = (args.length > 0)? Integer.parseInt(args[0]) : GraphStore.DEFAULT_PORT;
+		String name = (args.length > 1)? args[1] : GraphStore.DEFAULT_NAME;
+		int minSize = (args.length > 2)? Integer.parseInt(args[2]) : 0;
+		int maxSize = (args.length > 3)? Integer.parseInt(args[3]) : RAMSEY_STORE_SIZE;
+		final String bankFilename = (args.length > 4)? args[4] : BANK_FILENAME;
+		String logFilename = (args.length > 5)? args[5] : LOG_FILENAME;
+		
 		// Set Security Manager 
         System.setSecurityManager( new SecurityManager() );
 
         // Create Registry on JVM
-        Registry registry = LocateRegistry.createRegistry( GraphStore.DEFAULT_PORT );
+        Registry registry = LocateRegistry.createRegistry( port );
 
         //Print Acknowledgement
-        System.out.println("Starting Store as '"+GraphStore.DEFAULT_NAME+"' on port "+GraphStore.DEFAULT_PORT+"\n");
+        System.out.println("Starting Store as '"+name+"' on port "+port+" for Graph Sizes "+minSize+" to "+maxSize+"\n");
         
         // Create Store
-        RamseyStore store = RamseyStore.load(BANK_FILENAME, RAMSEY_STORE_SIZE);
+        RamseyStore store;
+        try {
+        	store = RamseyStore.load(bankFilename, minSize, maxSize);
+        }
+        catch (IOException e) {
+        	System.err.println("Error Loading Store from: '"+bankFilename+"' ("+e.getMessage()+")");
+        	System.err.println("Not starting, so the bank is not overwritten");
+        	System.exit(1);
+        	return;
+        }
         
         if(store != null){
-        	System.out.println("Loading Store from: '"+BANK_FILENAME+"'");
+        	System.out.println("Loading Store from: '"+bankFilename+"'");
         	System.out.println(store.contentsReportAsString());
         }
         else {
-        	System.out.println("Store Does not exist. Creating new one of size: "+RAMSEY_STORE_SIZE);
-        	store = new RamseyStore(RAMSEY_STORE_SIZE);
+        	System.out.println("Store Does not exist. Creating new one of size: "+maxSize);
+        	store = new RamseyStore(minSize, maxSize, new DefaultFrontierScore());
+        	store.setBankFilename(bankFilename);
+        }
+        
+        try {
+        	int replayed = store.openLog(logFilename);
+        	if(replayed > 0) {
+        		System.out.println("Replayed "+replayed+" graphs from: '"+logFilename+"'");
+        		System.out.println(store.contentsReportAsString());
+        	}
+        }
+        catch (IOException e) {
+        	System.err.println("Error Opening Log (graphs will only be saved in checkpoints)");
         }
      
-        registry.rebind( GraphStore.DEFAULT_NAME, store );
+        registry.rebind( name, store );
 
         //Checkpointer
         final RamseyStore theStore = store; 
@@ -197,9 +723,12 @@ public class RamseyStore extends UnicastRemoteObject implements Serializable, It
         	public void run() {
 				while(true) try {
 					Thread.sleep(CHECKPOINT_SAVE_INTERVAL);
+					if(!theStore.needsCompaction()) continue;
 					
-					System.out.println("Checkpoint Saved:");
-					theStore.save();
+					long start = System.currentTimeMillis();
+					int saved = theStore.save();
+					System.out.println("Checkpoint Saved: "+saved+" graphs, "+new File(bankFilename).length()/1024+" KB in "
+							+(System.currentTimeMillis()-start)+" ms (store held for "+theStore.getLastSnapshotPause()/1000+" us)");
 					System.out.println(theStore.contentsReportAsString());
 				}
 				catch (InterruptedException e) {} 
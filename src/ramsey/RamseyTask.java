@@ -4,11 +4,22 @@ import system.TaskClosure;
 import api.ComputerCallback;
 import api.Result;
 import api.SharedState;
+import api.Task;
 
 /**
- * Runs a Ramsey(5,5) search for counterexamples.
+ * Runs a Ramsey search for counterexamples (of the clique sizes of the starting graph).
  * Starts searching from the constructed graph and keeps searching until the size specified.
- * Produces partial results to the computer.
+ * The search itself is delegated to a SearchStrategy (taboo search by default).
+ * Produces every useful counterexample as a partial result to the computer, once.
+ * 
+ * While searching it periodically produces a checkpoint: a partial result holding a copy of this task
+ * (same UID) with the current graph and the strategy state. If the computer is lost,
+ * the scheduler can resume the search from the latest checkpoint instead of from scratch.
+ * 
+ * A task searches until its SearchBudget runs out or it is cancelled, 
+ * and then returns the largest counterexample it found (or the graph it got stuck on).
+ * That counterexample was already produced as a partial result, so the returned graph only tells
+ * how far the task got.
  * 
  * @author Michael Nekrasov
  * @author Roman Kazarin
@@ -18,128 +29,136 @@ public class RamseyTask extends TaskClosure<Graph> {
 
 	private static final long serialVersionUID = 6673708275266440578L;
 	
-	private transient TabooList taboo;
+	/**
+	 * Time between checkpoints (in ms)
+	 */
+	public static final long CHECKPOINT_INTERVAL = 60000;
+	
+	private final SearchStrategy strategy;
+	private final SearchBudget budget;
 	private Graph currentGraph;
+	private Graph lastSolution;
 	private int minUsefulSize, graphComputationLimit;
+	
+	//Spent budget (carried over into checkpoints)
+	private long steps = 0;
+	private long timeSpent = 0;
+	
+	private transient long startTime;
+	private transient long lastCheckpoint;
+	private transient int bestCount;
+	private transient long staleSteps;
 
 	public RamseyTask(Graph graph, int minUsefulSize, int graphComputationLimit) {
+		this(graph, minUsefulSize, graphComputationLimit, new TabooSearch());
+	}
+	
+	public RamseyTask(Graph graph, int minUsefulSize, int graphComputationLimit, SearchStrategy strategy) {
+		this(graph, minUsefulSize, graphComputationLimit, strategy, SearchBudget.NONE);
+	}
+	
+	public RamseyTask(Graph graph, int minUsefulSize, int graphComputationLimit, SearchStrategy strategy, SearchBudget budget) {
 		super("Ramsey", DEFAULT_PRIORITY, NO_INPUTS, LONG_RUNNING);
 		this.graphComputationLimit = graphComputationLimit;
 		this.minUsefulSize = minUsefulSize;
 		this.currentGraph = graph;
+		this.strategy = strategy;
+		this.budget = budget;
 	}
 
 	@Override
 	public void updateState(SharedState updatedState) {	}
 
 	@Override
-	protected Result<Graph> execute(SharedState currentState, ComputerCallback<Graph> callback) throws Exception {
-		callback.printMessage("Starting: "+currentGraph);
+	protected Result<Graph> execute(SharedState currentState, final ComputerCallback<Graph> callback) throws Exception {
+		callback.printMessage("Starting "+strategy.getName()+": "+currentGraph);
 		
-		taboo = new TabooList();
-		boolean isSolved = false;
-		do{
-			isSolved = findCounterExample(currentGraph, callback);
-			 
-			if(isSolved){
-				callback.producePartialResult(new Result<Graph>(currentGraph));
+		startTime = lastCheckpoint = System.currentTimeMillis();
+		SearchMonitor monitor = new SearchMonitor() {
+			@Override
+			public boolean onStep(Graph graph, int count) {
+				steps++;
+				if(count < bestCount){
+					bestCount = count;
+					staleSteps = 0;
+				}
+				else staleSteps++;
+				
+				if(System.currentTimeMillis() - lastCheckpoint >= CHECKPOINT_INTERVAL)
+					produceCheckpoint(callback);
+				return !shouldStop();
 			}
-			else{
+		};
+		
+		do{
+			bestCount = Integer.MAX_VALUE;
+			staleSteps = 0;
+			
+			if(!strategy.findCounterExample(currentGraph, callback, monitor)){
+				if(shouldStop()){
+					//give back the best we have, so the computer can be given something more promising
+					callback.printMessage((isCancelled()?"Cancelled":"Out of "+budget)+" at Graph Size "+currentGraph.size());
+					return new Result<Graph>(lastSolution != null ? lastSolution : currentGraph);
+				}
 				callback.printMessage("No solution found for size "+currentGraph.size());
 				throw new Exception("No solution found for size "+currentGraph.size());
 			}
 			
-			//Send Solution
+			currentGraph.setSolved(true);
+			lastSolution = currentGraph;
+			
+			//Send Solution (only once, the result returned at the end repeats it)
 			if(currentGraph.size() >= minUsefulSize)
 				callback.producePartialResult( new Result<Graph>(currentGraph) );
 			
-			//Extend and keep solving
-			currentGraph = currentGraph.extendRandom();
+			//Extend (with as few new cliques as possible) and keep solving
+			currentGraph = new GraphExtender(currentGraph).extend();
 			callback.printMessage("Solution found! Moving on to Graph Size "+currentGraph.size());
 		}
 		while(currentGraph.size() <= graphComputationLimit);
 		callback.printMessage("Search limit reached for this task: "+currentGraph.size());
-		return new Result<Graph>(currentGraph);
+		return new Result<Graph>(lastSolution);
 	}
 	
-	private boolean findCounterExample(Graph g, ComputerCallback<Graph> callback)  throws Exception{
-		
-		while(true){
-			//find out how we are doing
-			int count = g.cliqueCount();
-	
-			//if we have a counter example
-			if(count == 0) {
-				//YAY FOUND IT!
-				return true;
-			}
-	
-			/*
-			 * otherwise, we need to consider flipping an edge
-			 *
-			 * let's speculative flip each edge, record the new count,
-			 * and unflip the edge.  We'll then remember the best flip and
-			 * keep it next time around
-			 *
-			 * only need to work with upper triangle of matrix =>
-			 * notice the indices
-			 */
-			
-			int best_count = Integer.MAX_VALUE;
-			int best_i=-1;
-			int best_j=-1;
-			for(int i=0; i < g.size(); i++)
-			{
-				for(int j=i+1; j < g.size(); j++)
-				{
-					// flip it
-					g.flip(i,j);
-					count = g.cliqueCount();
-	
-					if(count == 0){
-						//YAY FOUND IT!
-						return true;
-					}
-					
-					// is it better and the i,j,count not taboo?
-					if( count < best_count && !taboo.contains(i, j))
-					{
-						best_count = count;
-						best_i = i;
-						best_j = j;	
-					}
-	
-					//flip it back
-					g.flip(i,j);
-				}
-			}
+	/**
+	 * Get size of the graph the task is working on
+	 * @return number of nodes
+	 */
+	public int getGraphSize() {
+		return currentGraph.size();
+	}
 	
-			if(best_count == Integer.MAX_VALUE) {
-				//System.out.println("!! No best edge to remove");
-				return false;
-			}
-			
-			// keep the best flip we saw
-			g.flip(best_i, best_j);
+	/**
+	 * Should the search stop: the task was cancelled or its budget ran out
+	 * @return true if it should
+	 */
+	private boolean shouldStop() {
+		return isCancelled() || budget.isExhausted(elapsedTime(), steps, staleSteps);
+	}
 	
-			/*
-			 * taboo this graph configuration so that we don't visit
-			 * it again
-			 */
-			count = g.cliqueCount();
-			taboo.add(best_i,best_j);
-			
+	/**
+	 * Time spent on the search, including time before it was last checkpointed (in ms)
+	 * @return the time
+	 */
+	private long elapsedTime() {
+		return timeSpent + System.currentTimeMillis() - startTime;
+	}
 	
-			/*
-			System.out.println("size: "+g.size()+"\t"
-					+ "best_count: "+best_count+"\t"
-					+ "best edge: ("+best_i+","+best_j+")\t"
-					+ "color: "+ (g.get(best_i, best_j)?1:0)
-					);
-			*/
-			// rinse and repeat
-		}
+	/**
+	 * Send a copy of this task in its current state as a partial result
+	 * @param callback of the computer running the task
+	 */
+	private void produceCheckpoint(ComputerCallback<Graph> callback) {
+		RamseyTask checkpoint = new RamseyTask(new Graph(currentGraph), minUsefulSize, graphComputationLimit, strategy.copy(), budget);
+		checkpoint.setUid(getUID());
+		checkpoint.lastSolution = lastSolution;
+		checkpoint.steps = steps;
+		checkpoint.timeSpent = elapsedTime();
 		
+		@SuppressWarnings("unchecked")
+		Task<Graph>[] tasks = new Task[]{ checkpoint };
+		callback.producePartialResult(new Result<Graph>(null, tasks, null));
+		lastCheckpoint = System.currentTimeMillis();
 	}
 	
 	@Override
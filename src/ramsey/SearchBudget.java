@@ -0,0 +1,65 @@
+package ramsey;
+
+import java.io.Serializable;
+
+/**
+ * Limits on how long a RamseyTask may search before it gives up and returns its best graph.
+ * A task can be limited by wall time, by the total number of search steps, 
+ * and by the number of steps without improving the clique count of the current graph (a plateau).
+ * A limit of UNLIMITED is never hit.
+ * 
+ * @author Michael Nekrasov
+ * @author Roman Kazarin
+ *
+ */
+public class SearchBudget implements Serializable {
+
+	private static final long serialVersionUID = -3412279106342805471L;
+	
+	public static final long UNLIMITED = Long.MAX_VALUE;
+	
+	/**
+	 * Budget that never runs out
+	 */
+	public static final SearchBudget NONE = new SearchBudget(UNLIMITED, UNLIMITED, UNLIMITED);
+	
+	private final long maxTime;
+	private final long maxSteps;
+	private final long maxStaleSteps;
+	
+	/**
+	 * Create a budget
+	 * @param maxTime wall time the task may run for (in ms)
+	 * @param maxSteps total number of search steps
+	 * @param maxStaleSteps number of steps in a row that do not improve on the best count of the current graph
+	 */
+	public SearchBudget(long maxTime, long maxSteps, long maxStaleSteps) {
+		this.maxTime = maxTime;
+		this.maxSteps = maxSteps;
+		this.maxStaleSteps = maxStaleSteps;
+	}
+	
+	/**
+	 * Has the budget run out
+	 * @param time spent so far (in ms)
+	 * @param steps taken so far
+	 * @param staleSteps taken since the last improvement
+	 * @return true if any of the limits is hit
+	 */
+	public boolean isExhausted(long time, long steps, long staleSteps) {
+		return time >= maxTime || steps >= maxSteps || staleSteps >= maxStaleSteps;
+	}
+	
+	public long getMaxTime()		{ return maxTime; }
+	public long getMaxSteps()		{ return maxSteps; }
+	public long getMaxStaleSteps()	{ return maxStaleSteps; }
+	
+	@Override
+	public String toString() {
+		return "Budget(time="+limit(maxTime)+" steps="+limit(maxSteps)+" stale="+limit(maxStaleSteps)+")";
+	}
+	
+	private static String limit(long value) {
+		return value == UNLIMITED ? "-" : Long.toString(value);
+	}
+}
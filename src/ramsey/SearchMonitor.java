@@ -0,0 +1,22 @@
+package ramsey;
+
+/**
+ * Watches the progress of a SearchStrategy.
+ * Strategies report every step they take, which lets the task running them
+ * act on a long search while it is still going (for example to checkpoint or stop it).
+ * 
+ * @author Michael Nekrasov
+ * @author Roman Kazarin
+ *
+ */
+public interface SearchMonitor {
+
+	/**
+	 * Called by the strategy after every step of its search
+	 * (the strategy is in a consistent state, and can be copied)
+	 * @param graph being searched
+	 * @param count clique count of the graph
+	 * @return true to keep searching, false to make the strategy give up
+	 */
+	boolean onStep(Graph graph, int count);
+}
@@ -0,0 +1,49 @@
+package ramsey;
+
+import java.io.Serializable;
+import java.util.SplittableRandom;
+
+import api.ComputerCallback;
+
+/**
+ * Defines a local search that repairs a graph into a counterexample.
+ * Used by a RamseyTask on every graph size it works through,
+ * so a strategy may keep state (like a taboo list) from one graph to the next.
+ * 
+ * @author Michael Nekrasov
+ * @author Roman Kazarin
+ *
+ */
+public interface SearchStrategy extends Serializable {
+
+	/**
+	 * Modify the graph in place until it has no monochromatic cliques
+	 * @param graph to start from (modified by the search)
+	 * @param callback of the Computer running the search
+	 * @param monitor to report every step to
+	 * @return true if a counterexample was found, false if the search gave up (or the monitor stopped it)
+	 * @throws Exception
+	 */
+	boolean findCounterExample(Graph graph, ComputerCallback<Graph> callback, SearchMonitor monitor) throws Exception;
+	
+	/**
+	 * Copy the strategy along with any search state it keeps,
+	 * so the search can later be resumed from the copy
+	 * @return independent copy
+	 */
+	SearchStrategy copy();
+	
+	/**
+	 * Give the strategy its own source of randomness, so a search can be replayed from its seed
+	 * (strategies that make no random choices ignore it)
+	 * @param random to draw from
+	 */
+	void setRandom(SplittableRandom random);
+	
+	/**
+	 * Gets the name of the strategy
+	 * Ex: Taboo, Annealing, Hybrid
+	 * @return the name
+	 */
+	String getName();
+}
@@ -0,0 +1,284 @@
+package ramsey;
+
+import java.net.MalformedURLException;
+import java.rmi.Naming;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A Graph Store made of several stores (shards), each holding a range of graph sizes,
+ * so the bank and the requests are split between several store processes.
+ *
+ * Lives on the client side: graphs are routed to the shard that holds their size, and
+ * best graphs are asked for from the shards holding the largest sizes first.
+ * Batch calls make one call per shard they need, and lease ids carry the shard that granted them.
+ * Graph ids do not tell their size, so contains() asks every shard.
+ *
+ * @author Michael Nekrasov
+ * @author Roman Kazarin
+ *
+ */
+public class ShardedGraphStore implements GraphStore {
+
+	/**
+	 * Separates the addresses of the shards of a store
+	 */
+	public static final String ADDRESS_SEPARATOR = ",";
+
+	private final GraphStore[] shards;
+	private final int[] minSizes, maxSizes;
+
+	/**
+	 * Create store of shards
+	 * @param shards stores holding ranges of sizes that do not overlap
+	 * @throws RemoteException if a shard could not be asked for its range
+	 */
+	public ShardedGraphStore(List<GraphStore> shards) throws RemoteException {
+		final int[] ranges = new int[shards.size()*2];
+		List<Integer> order = new ArrayList<Integer>();
+		for(int i=0; i < shards.size(); i++) {
+			ranges[2*i] = shards.get(i).getMinSize();
+			ranges[2*i+1] = shards.get(i).getMaxSize();
+			order.add(i);
+		}
+
+		//largest sizes first
+		Collections.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Integer.compare(ranges[2*b+1], ranges[2*a+1]);
+			}
+		});
+
+		this.shards = new GraphStore[shards.size()];
+		this.minSizes = new int[shards.size()];
+		this.maxSizes = new int[shards.size()];
+		for(int s=0; s < order.size(); s++) {
+			int i = order.get(s);
+			this.shards[s] = shards.get(i);
+			this.minSizes[s] = ranges[2*i];
+			this.maxSizes[s] = ranges[2*i+1];
+			if(s > 0 && maxSizes[s] >= minSizes[s-1])
+				throw new IllegalArgumentException("Shards overlap at Graph Size "+maxSizes[s]);
+		}
+	}
+
+	/**
+	 * Look up a store by its RMI address, or a store of shards by the addresses of its shards
+	 * @param addresses RMI addresses of the shards (separated by ADDRESS_SEPARATOR)
+	 * @return the store
+	 * @throws MalformedURLException
+	 * @throws RemoteException
+	 * @throws NotBoundException
+	 */
+	public static GraphStore lookup(String addresses) throws MalformedURLException, RemoteException, NotBoundException {
+		String[] split = addresses.split(ADDRESS_SEPARATOR);
+		if(split.length == 1)
+			return (GraphStore) Naming.lookup(split[0].trim());
+
+		List<GraphStore> shards = new ArrayList<GraphStore>();
+		for(String address: split)
+			shards.add((GraphStore) Naming.lookup(address.trim()));
+		return new ShardedGraphStore(shards);
+	}
+
+	@Override
+	public int getMinSize() {
+		return minSizes[minSizes.length-1];
+	}
+
+	@Override
+	public int getMaxSize() {
+		return maxSizes[0];
+	}
+
+	@Override
+	public boolean put(Graph graph) throws RemoteException {
+		int shard = shardOf(graph.size());
+		return shard >= 0 && shards[shard].put(graph);
+	}
+
+	@Override
+	public boolean contains(UUID graphId) throws RemoteException {
+		for(GraphStore shard: shards)
+			if(shard.contains(graphId)) return true;
+		return false;
+	}
+
+	@Override
+	public Graph getBestUnasigned() throws RemoteException {
+		return getBestUnasigned(Integer.MAX_VALUE);
+	}
+
+	@Override
+	public Graph getBestUnasigned(int startingAt) throws RemoteException {
+		for(int s=0; s < shards.length; s++) {
+			if(minSizes[s] > startingAt) continue;
+			Graph graph = shards[s].getBestUnasigned(startingAt);
+			if(graph != null) return graph;
+		}
+		return null;
+	}
+
+	@Override
+	public GraphLease lease(int startingAt, long duration) throws RemoteException {
+		for(int s=0; s < shards.length; s++) {
+			if(minSizes[s] > startingAt) continue;
+			GraphLease lease = shards[s].lease(startingAt, duration);
+			if(lease != null) return routed(lease, s);
+		}
+		return null;
+	}
+
+	@Override
+	public boolean renew(long leaseId, long duration) throws RemoteException {
+		return shards[shardOfLease(leaseId)].renew(shardLeaseId(leaseId), duration);
+	}
+
+	@Override
+	public void release(long leaseId, boolean extended) throws RemoteException {
+		shards[shardOfLease(leaseId)].release(shardLeaseId(leaseId), extended);
+	}
+
+	@Override
+	public void giveBack(long leaseId) throws RemoteException {
+		shards[shardOfLease(leaseId)].giveBack(shardLeaseId(leaseId));
+	}
+
+	@Override
+	public boolean[] putAll(List<Graph> graphs) throws RemoteException {
+		boolean[] accepted = new boolean[graphs.size()];
+		for(int s=0; s < shards.length; s++) {
+			List<Integer> indexes = new ArrayList<Integer>();
+			List<Graph> batch = new ArrayList<Graph>();
+			for(int i=0; i < graphs.size(); i++) {
+				if(shardOf(graphs.get(i).size()) != s) continue;
+				indexes.add(i);
+				batch.add(graphs.get(i));
+			}
+			if(batch.isEmpty()) continue;
+
+			boolean[] shardAccepted = shards[s].putAll(batch);
+			for(int b=0; b < shardAccepted.length; b++)
+				accepted[indexes.get(b)] = shardAccepted[b];
+		}
+		return accepted;
+	}
+
+	@Override
+	public boolean[] containsAll(List<UUID> graphIds) throws RemoteException {
+		boolean[] present = new boolean[graphIds.size()];
+		for(GraphStore shard: shards) {
+			boolean[] inShard = shard.containsAll(graphIds);
+			for(int i=0; i < present.length; i++)
+				present[i] |= inShard[i];
+		}
+		return present;
+	}
+
+	@Override
+	public List<GraphLease> leaseMany(int startingAt, int count, long duration) throws RemoteException {
+		List<GraphLease> leased = new ArrayList<GraphLease>();
+		for(int s=0; s < shards.length && leased.size() < count; s++) {
+			if(minSizes[s] > startingAt) continue;
+			for(GraphLease lease: shards[s].leaseMany(startingAt, count - leased.size(), duration))
+				leased.add(routed(lease, s));
+		}
+		return leased;
+	}
+
+	@Override
+	public boolean[] renewAll(long[] leaseIds, long duration) throws RemoteException {
+		boolean[] renewed = new boolean[leaseIds.length];
+		for(int s=0; s < shards.length; s++) {
+			int[] indexes = leasesOf(s, leaseIds);
+			if(indexes.length == 0) continue;
+
+			boolean[] shardRenewed = shards[s].renewAll(shardLeaseIds(indexes, leaseIds), duration);
+			for(int b=0; b < indexes.length; b++)
+				renewed[indexes[b]] = shardRenewed[b];
+		}
+		return renewed;
+	}
+
+	@Override
+	public void releaseAll(long[] leaseIds, boolean[] extended) throws RemoteException {
+		for(int s=0; s < shards.length; s++) {
+			int[] indexes = leasesOf(s, leaseIds);
+			if(indexes.length == 0) continue;
+
+			boolean[] shardExtended = new boolean[indexes.length];
+			for(int b=0; b < indexes.length; b++)
+				shardExtended[b] = extended[indexes[b]];
+			shards[s].releaseAll(shardLeaseIds(indexes, leaseIds), shardExtended);
+		}
+	}
+
+	@Override
+	public String toString() {
+		String out = "Sharded Store:";
+		for(int s=0; s < shards.length; s++)
+			out += " ["+minSizes[s]+"-"+maxSizes[s]+"]";
+		return out;
+	}
+
+	//--------------------------------------------------------
+	//					Private Methods
+	//--------------------------------------------------------
+
+	/**
+	 * Find the shard holding a size
+	 * @param size of graph
+	 * @return index of shard, or -1 if no shard holds the size
+	 */
+	private int shardOf(int size) {
+		for(int s=0; s < shards.length; s++)
+			if(size >= minSizes[s] && size <= maxSizes[s]) return s;
+		return -1;
+	}
+
+	/**
+	 * Give a lease of a shard an id that tells the shard
+	 * @param lease granted by the shard
+	 * @param shard index of shard
+	 * @return the lease, with the routed id
+	 */
+	private GraphLease routed(GraphLease lease, int shard) {
+		return new GraphLease(lease.getId()*shards.length + shard, lease.getGraph(), lease.getDeadline());
+	}
+
+	private int shardOfLease(long leaseId) {
+		return (int) (leaseId % shards.length);
+	}
+
+	private long shardLeaseId(long leaseId) {
+		return leaseId / shards.length;
+	}
+
+	/**
+	 * Find the leases granted by a shard
+	 * @param shard index of shard
+	 * @param leaseIds routed ids of leases
+	 * @return indexes of the leases of the shard
+	 */
+	private int[] leasesOf(int shard, long[] leaseIds) {
+		int[] indexes = new int[leaseIds.length];
+		int found = 0;
+		for(int i=0; i < leaseIds.length; i++)
+			if(shardOfLease(leaseIds[i]) == shard) indexes[found++] = i;
+		return Arrays.copyOf(indexes, found);
+	}
+
+	private long[] shardLeaseIds(int[] indexes, long[] leaseIds) {
+		long[] ids = new long[indexes.length];
+		for(int b=0; b < indexes.length; b++)
+			ids[b] = shardLeaseId(leaseIds[indexes[b]]);
+		return ids;
+	}
+}
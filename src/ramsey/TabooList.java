@@ -1,39 +1,169 @@
 package ramsey;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.util.HashSet;
+import java.util.Arrays;
 
 /**
  * A list of flipped edges that prevents revisiting graphs in a given search.
- * 
+ *
+ * An edge stays taboo for a fixed number of iterations (the tenure) after it was flipped.
+ * For every edge only the iteration at which it stops being taboo is stored, in an array
+ * indexed by edge, so checking an edge does not allocate.
+ * A taboo edge is still admitted if flipping it would beat the best count seen (aspiration).
+ * Only the edges that are still taboo are serialized, so a checkpointed list stays small.
+ *
  * @author Michael Nekrasov
  * @author Roman Kazarin
  *
  */
 public class TabooList implements Serializable {
 
-	private static final long serialVersionUID = -6356707817281392834L;
-	
-	private HashSet<Integer> set;
-	
+	private static final long serialVersionUID = 3027717312840853742L;
+
+	/**
+	 * Default number of iterations a flipped edge stays taboo
+	 */
+	public static final int DEFAULT_TENURE = 20;
+
+	//All state is written by writeObject()
+	//(iterations are counted in longs, as a long search passes 2^31 steps)
+	private transient long[] expires = new long[0];
+	private transient int tenure;
+	private transient long iteration = 0;
+	private transient int bestCount = Integer.MAX_VALUE;
+
 	public TabooList() {
-		set = new HashSet<>();
+		this(DEFAULT_TENURE);
+	}
+
+	/**
+	 * Create taboo list
+	 * @param tenure number of iterations a flipped edge stays taboo
+	 */
+	public TabooList(int tenure) {
+		this.tenure = tenure;
+	}
+	
+	/**
+	 * Copy Constructor
+	 * @param toCopy
+	 */
+	public TabooList(TabooList toCopy) {
+		this.expires = toCopy.expires.clone();
+		this.tenure = toCopy.tenure;
+		this.iteration = toCopy.iteration;
+		this.bestCount = toCopy.bestCount;
 	}
 
+	/**
+	 * Make edge taboo for the next tenure iterations
+	 * @param i node of edge
+	 * @param j other node of edge
+	 */
 	public void add(int i, int j){
-		set.add(hash(i,j));
+		int index = index(i,j);
+		if(index >= expires.length)
+			expires = Arrays.copyOf(expires, Math.max(index+1, expires.length*2));
+		expires[index] = iteration + tenure;
 	}
 
+	/**
+	 * Is edge currently taboo
+	 * @param i node of edge
+	 * @param j other node of edge
+	 * @return true if taboo
+	 */
 	public boolean contains(int i, int j){
-		return set.contains(hash(i,j));
+		int index = index(i,j);
+		return index < expires.length && expires[index] > iteration;
 	}
-	
+
+	/**
+	 * May the edge be flipped: it is not taboo,
+	 * or flipping it results in a count better than any seen so far
+	 * @param i node of edge
+	 * @param j other node of edge
+	 * @param resultingCount clique count after flipping the edge
+	 * @return true if flip is allowed
+	 */
+	public boolean admits(int i, int j, int resultingCount){
+		return resultingCount < bestCount || !contains(i,j);
+	}
+
+	/**
+	 * Record count reached by a flip and advance to next iteration
+	 * @param count clique count after the flip
+	 */
+	public void nextIteration(int count){
+		if(count < bestCount) bestCount = count;
+		iteration++;
+	}
+
+	/**
+	 * Forget best count seen (when search moves on to a different graph, or resumes on one),
+	 * starting from the count of the graph, so only a flip that improves on it overrides the taboo
+	 * @param count clique count of the graph the search starts from
+	 */
+	public void resetAspiration(int count){
+		bestCount = count;
+	}
+
+	/**
+	 * Get number of edges that are currently taboo
+	 * @return number of edges
+	 */
 	public int size(){
-		return set.size();
+		int count = 0;
+		for(long expiry: expires)
+			if(expiry > iteration) count++;
+		return count;
+	}
+
+	public long getIteration()	{ return iteration; }
+	public int getTenure()		{ return tenure; }
+	public void setTenure(int tenure) { this.tenure = tenure; }
+
+	/**
+	 * Position of edge in the expiry array (independent of graph size)
+	 * @param i node of edge
+	 * @param j other node of edge
+	 * @return index
+	 */
+	protected int index(int i, int j){
+		if(i > j) { int t = i; i = j; j = t; }
+		return j*(j-1)/2 + i;
+	}
+	
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(tenure);
+		out.writeLong(iteration);
+		out.writeInt(bestCount);
+		out.writeInt(expires.length);
+		out.writeInt(size());
+		for(int index=0; index < expires.length; index++) {
+			if(expires[index] > iteration) {
+				out.writeInt(index);
+				out.writeLong(expires[index]);
+			}
+		}
 	}
 	
-	protected int hash(int i, int j){
-		return (i << 16) | (j & 0XFFFF);
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		tenure = in.readInt();
+		iteration = in.readLong();
+		bestCount = in.readInt();
+		expires = new long[in.readInt()];
+		for(int live = in.readInt(); live > 0; live--) {
+			int index = in.readInt();
+			if(index < 0 || index >= expires.length)
+				throw new IOException("Taboo edge out of range: "+index);
+			expires[index] = in.readLong();
+		}
 	}
 
 }
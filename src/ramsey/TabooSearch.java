@@ -0,0 +1,380 @@
+package ramsey;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import api.ComputerCallback;
+
+/**
+ * Steepest descent search with a taboo list.
+ * On every step flips the edge that lowers the clique count the most
+ * (read from a CliqueParticipation table), unless it was flipped recently.
+ * 
+ * With a parallelism above one, large graphs are instead searched by splitting the
+ * neighbourhood scan across a local pool of workers. Each worker reads the deltas of its share of the
+ * rows from the shared participation table (which is read only during the scan), and the best moves are reduced.
+ * The flip that updates the table stays sequential, so this is only used when asked for
+ * (the scheduler runs sequential searches, as the split scan has not been faster so far).
+ * 
+ * With a candidate list, every step instead evaluates only the edges that are in the most
+ * monochromatic cliques (the only edges whose flip can lower the count), and a few random edges
+ * to keep the search moving. The table then tracks only the cliques each edge is in, which makes
+ * flips much cheaper, and the flip deltas of the candidates are counted on demand.
+ * 
+ * @author Michael Nekrasov
+ * @author Roman Kazarin
+ *
+ */
+public class TabooSearch implements SearchStrategy {
+
+	private static final long serialVersionUID = -1749160930713493254L;
+	
+	/**
+	 * Smallest graph whose neighbourhood is scanned in parallel
+	 */
+	public static final int PARALLEL_SCAN_SIZE = 30;
+	
+	/**
+	 * Default number of edges (by clique participation) evaluated per step in candidate list mode
+	 */
+	public static final int DEFAULT_CANDIDATES = 48;
+	
+	private final TabooList taboo;
+	private final int parallelism;
+	private final int candidates;
+	private transient SplittableRandom random;
+	
+	public TabooSearch() {
+		this(TabooList.DEFAULT_TENURE, 1);
+	}
+	
+	/**
+	 * Create taboo search
+	 * @param tenure number of iterations a flipped edge stays taboo
+	 * @param parallelism number of workers to scan the neighbourhood with (1 for sequential)
+	 */
+	public TabooSearch(int tenure, int parallelism) {
+		this(new TabooList(tenure), parallelism, 0);
+	}
+	
+	/**
+	 * Create taboo search with a candidate list (searched sequentially)
+	 * @param tenure number of iterations a flipped edge stays taboo
+	 * @param candidates number of edges in the most cliques evaluated per step
+	 * (and a quarter as many random edges), or 0 to evaluate all edges
+	 */
+	public static TabooSearch withCandidates(int tenure, int candidates) {
+		return new TabooSearch(new TabooList(tenure), 1, candidates);
+	}
+	
+	private TabooSearch(TabooList taboo, int parallelism, int candidates) {
+		this.taboo = taboo;
+		this.parallelism = parallelism;
+		this.candidates = candidates;
+	}
+
+	@Override
+	public boolean findCounterExample(Graph g, ComputerCallback<Graph> callback, SearchMonitor monitor)  throws Exception{
+		if(candidates > 0)
+			return findWithCandidates(g, monitor);
+		if(parallelism > 1 && g.size() >= PARALLEL_SCAN_SIZE)
+			return findInParallel(g, monitor);
+		
+
+		//find out how we are doing (counted once, then kept up to date on every flip)
+		CliqueParticipation table = new CliqueParticipation(g);
+		taboo.resetAspiration(table.cliqueCount());
+		
+		while(true){
+			int count = table.cliqueCount();
+			
+			//if we have a counter example
+			if(count == 0) {
+				//YAY FOUND IT!
+				return true;
+			}
+	
+			/*
+			 * otherwise, we need to consider flipping an edge
+			 *
+			 * the participation table knows how many cliques each flip would
+			 * remove and create, so just read it and remember the best delta.
+			 * The graph itself is never modified during the scan.
+			 *
+			 * only need to work with upper triangle of matrix =>
+			 * notice the indices
+			 */
+			
+			int best_delta = Integer.MAX_VALUE;
+			int best_i=-1;
+			int best_j=-1;
+			for(int i=0; i < g.size(); i++)
+			{
+				for(int j=i+1; j < g.size(); j++)
+				{
+					int delta = table.flipDelta(i,j);
+	
+					if(count + delta == 0){
+						//YAY FOUND IT!
+						table.flip(i,j);
+						return true;
+					}
+					
+					// is it better and the i,j,count not taboo (or better than ever seen)?
+					if( delta < best_delta && taboo.admits(i, j, count+delta))
+					{
+						best_delta = delta;
+						best_i = i;
+						best_j = j;	
+					}
+				}
+			}
+	
+			if(best_delta == Integer.MAX_VALUE) {
+				//System.out.println("!! No best edge to remove");
+				return false;
+			}
+			
+			// keep the best flip we saw
+			table.flip(best_i, best_j);
+	
+			/*
+			 * taboo this edge for the next few iterations so that
+			 * we don't flip it right back
+			 */
+			taboo.add(best_i,best_j);
+			taboo.nextIteration(table.cliqueCount());
+			if(!monitor.onStep(g, table.cliqueCount())) return false;
+			// rinse and repeat
+		}
+	}
+	
+	/**
+	 * Same search, but evaluating only the flips of the candidate list
+	 * @param g graph to search on
+	 * @param monitor to report every step to
+	 * @return true if a counterexample was found
+	 */
+	private boolean findWithCandidates(Graph g, SearchMonitor monitor) {
+		if(random == null) random = new SplittableRandom();
+		
+		CliqueParticipation table = new CliqueParticipation(g, false);
+		taboo.resetAspiration(table.cliqueCount());
+		int samples = Math.max(1, candidates/4);
+		int[] rows = new int[candidates+samples];
+		int[] cols = new int[candidates+samples];
+		
+		while(true) {
+			int count = table.cliqueCount();
+			if(count == 0) return true;
+			
+			int n = topByParticipation(table, rows, cols);
+			for(int s=0; s < samples; s++, n++) {
+				rows[n] = random.nextInt(g.size());
+				cols[n] = random.nextInt(g.size()-1);
+				if(cols[n] >= rows[n]) cols[n]++;
+			}
+			
+			int best_delta = Integer.MAX_VALUE;
+			int best_i=-1;
+			int best_j=-1;
+			for(int c=0; c < n; c++) {
+				int delta = table.flipDelta(rows[c], cols[c]);
+				
+				if(count + delta == 0){
+					//YAY FOUND IT!
+					table.flip(rows[c], cols[c]);
+					return true;
+				}
+				if(delta < best_delta && taboo.admits(rows[c], cols[c], count+delta)) {
+					best_delta = delta;
+					best_i = rows[c];
+					best_j = cols[c];
+				}
+			}
+			
+			if(best_delta == Integer.MAX_VALUE) return false;
+			
+			table.flip(best_i, best_j);
+			taboo.add(best_i,best_j);
+			taboo.nextIteration(table.cliqueCount());
+			if(!monitor.onStep(g, table.cliqueCount())) return false;
+		}
+	}
+	
+	/**
+	 * Select the edges that are in the most cliques (up to the candidate list size)
+	 * @param table tracking the graph
+	 * @param rows to fill with the smaller node of every selected edge
+	 * @param cols to fill with the larger node of every selected edge
+	 * @return number of edges selected
+	 */
+	private int topByParticipation(CliqueParticipation table, int[] rows, int[] cols) {
+		int[] participation = new int[candidates];
+		int n = 0;
+		for(int e=0; e < table.cliqueEdgeCount(); e++) {
+			int i = table.cliqueEdgeRow(e);
+			int j = table.cliqueEdgeColumn(e);
+			int p = table.participation(i, j);
+			if(n == candidates && p <= participation[n-1]) continue;
+			
+			//insert in place, dropping the last edge if the list is full
+			int at = n < candidates ? n++ : n-1;
+			for(; at > 0 && participation[at-1] < p; at--) {
+				participation[at] = participation[at-1];
+				rows[at] = rows[at-1];
+				cols[at] = cols[at-1];
+			}
+			participation[at] = p;
+			rows[at] = i;
+			cols[at] = j;
+		}
+		return n;
+	}
+	
+	/**
+	 * Same search, but reading the flip deltas of the participation table split across workers
+	 * (the pool only lives as long as the search)
+	 * @param g graph to search on
+	 * @param monitor to report every step to
+	 * @return true if a counterexample was found
+	 */
+	private boolean findInParallel(Graph g, SearchMonitor monitor) {
+		CliqueParticipation table = new CliqueParticipation(g);
+		taboo.resetAspiration(table.cliqueCount());
+		long grain = Math.max(1, g.size()*(g.size()-1)/2 / (parallelism*4));
+		
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			while(table.cliqueCount() > 0) {
+				int count = table.cliqueCount();
+				Move best = pool.invoke(new NeighbourhoodScan(table, taboo, count, 0, g.size()-1, grain));
+				
+				if(best.solvesAt >= 0) {
+					//YAY FOUND IT!
+					table.flip(best.solvesAt / g.size(), best.solvesAt % g.size());
+					return true;
+				}
+				if(best.delta == Integer.MAX_VALUE) return false;
+				
+				table.flip(best.i, best.j);
+				taboo.add(best.i, best.j);
+				taboo.nextIteration(table.cliqueCount());
+				if(!monitor.onStep(g, table.cliqueCount())) return false;
+			}
+			return true;
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * Copy keeps the taboo list, so a resumed search does not walk straight back
+	 */
+	@Override
+	public TabooSearch copy() {
+		return new TabooSearch(new TabooList(taboo), parallelism, candidates);
+	}
+	
+	/**
+	 * Taboo search is deterministic (ties go to the first edge),
+	 * except for the random edges added to a candidate list, which are drawn from the given random
+	 */
+	@Override
+	public void setRandom(SplittableRandom random) {
+		this.random = random;
+	}
+	
+	@Override
+	public String getName() {
+		if(candidates > 0) return "Taboo top"+candidates;
+		return parallelism > 1 ? "Taboo x"+parallelism : "Taboo";
+	}
+	
+	/**
+	 * Best move found in part of the neighbourhood
+	 */
+	private static class Move {
+		int delta = Integer.MAX_VALUE;
+		int i = -1, j = -1;
+		int solvesAt = -1;
+		
+		/**
+		 * Keep better of the two moves (ties go to the earlier edge, like the sequential scan)
+		 */
+		Move merge(Move later) {
+			if(later.delta < delta) {
+				delta = later.delta;
+				i = later.i;
+				j = later.j;
+			}
+			if(solvesAt < 0) solvesAt = later.solvesAt;
+			return this;
+		}
+	}
+	
+	/**
+	 * Reads the flip deltas of all edges in a range of rows, splitting rows into halves of equal edge count
+	 */
+	private static class NeighbourhoodScan extends RecursiveTask<Move> {
+
+		private static final long serialVersionUID = -1161232347958386004L;
+		
+		private final CliqueParticipation table;
+		private final TabooList taboo;
+		private final int count;
+		private final int from, to;
+		private final long grain;
+		
+		NeighbourhoodScan(CliqueParticipation table, TabooList taboo, int count, int from, int to, long grain) {
+			this.table = table;
+			this.taboo = taboo;
+			this.count = count;
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+		}
+		
+		@Override
+		protected Move compute() {
+			if(to-from <= 1 || edgesBefore(to)-edgesBefore(from) <= grain) {
+				Move best = new Move();
+				int n = table.getGraph().size();
+				for(int i=from; i < to; i++) {
+					for(int j=i+1; j < n; j++) {
+						int delta = table.flipDelta(i,j);
+						
+						if(count + delta == 0 && best.solvesAt < 0)
+							best.solvesAt = i*n+j;
+						
+						if(delta < best.delta && taboo.admits(i, j, count+delta)) {
+							best.delta = delta;
+							best.i = i;
+							best.j = j;
+						}
+					}
+				}
+				return best;
+			}
+			
+			long half = (edgesBefore(from) + edgesBefore(to)) / 2;
+			int mid = from+1;
+			while(mid < to-1 && edgesBefore(mid+1) <= half) mid++;
+			
+			NeighbourhoodScan left = new NeighbourhoodScan(table, taboo, count, from, mid, grain);
+			left.fork();
+			Move right = new NeighbourhoodScan(table, taboo, count, mid, to, grain).compute();
+			return left.join().merge(right);
+		}
+		
+		/**
+		 * Number of upper triangle edges in rows before given row
+		 */
+		private long edgesBefore(int row) {
+			int n = table.getGraph().size();
+			return (long)row*(2*n-row-1)/2;
+		}
+	}
+}
@@ -7,7 +7,9 @@ import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import util.Log;
@@ -39,6 +41,7 @@ public class ComputeNode<R> extends UnicastRemoteObject implements Computer<R> {
 	private transient BlockingQueue<Task<R>> tasks;
 	private transient BlockingQueue<Result<R>> results;
 	private transient List<ComputeThread> threads;
+	private transient Map<Long, Task<R>> activeTasks;
 	
 	private transient Space<R> space;
 	private transient SharedState state;
@@ -48,6 +51,7 @@ public class ComputeNode<R> extends UnicastRemoteObject implements Computer<R> {
 
 		results = new LinkedBlockingQueue<Result<R>>();
 		threads = new LinkedList<ComputeThread>();
+		activeTasks = new ConcurrentHashMap<Long, Task<R>>();
 		tasks = new LinkedBlockingQueue<Task<R>>(spec.getBufferSize());
 
 		for(int i=0; i<spec.getNumberOfThreads(); i++){
@@ -61,8 +65,18 @@ public class ComputeNode<R> extends UnicastRemoteObject implements Computer<R> {
 	public void addTask(Task<R> task) throws RemoteException, InterruptedException {
 		Log.verbose("--> "+task);
 		
+		activeTasks.put(task.getUID(), task);
 		tasks.put(task);
 	}
+	
+	@Override
+	public void cancelTask(long uid) throws RemoteException {
+		Task<R> task = activeTasks.get(uid);
+		if(task == null) return;
+		
+		Log.verbose("--> cancel "+task);
+		task.cancel();
+	}
 
 	@Override
 	public Result<R> collectResult() throws RemoteException, InterruptedException {
@@ -131,6 +145,7 @@ public class ComputeNode<R> extends UnicastRemoteObject implements Computer<R> {
 				});
 				
 				Log.verbose("-"+id+"- "+task+" = "+result);
+				activeTasks.remove(task.getUID());
 				result.setTaskCompleted();
 				results.put(result);
 			}catch(InterruptedException e){	}
@@ -83,6 +83,19 @@ public class ProxyImp<R> implements Proxy<R> {
 		assignedTasks.add(task);
 	}
 
+	@Override
+	public void cancelTask(long uid) throws ProxyStoppedException{
+		if(!isRunning) throw new ProxyStoppedException("Computer is already stopped");
+		if(!taskRegistry.containsKey(uid)) return;
+		
+		try {
+			computer.cancelTask(uid);
+			Log.verbose("="+id+"=> cancel "+uid);
+		} catch (RemoteException e) {
+			stopProxyWithError();
+		}
+	}
+
 	@Override
 	public boolean isBufferFull() {
 		return getNumQueued() > spec.getBufferSize()+spec.getNumberOfThreads();
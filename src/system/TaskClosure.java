@@ -42,6 +42,7 @@ public abstract class TaskClosure<R> implements Task<R>{
 	
 	//Properties
 	boolean isShorRunning = true;
+	private transient volatile boolean cancelled = false;
 		
 	// Metrics
 	List<Double> criticalLengthsOfParents = new LinkedList<Double>();
@@ -94,6 +95,15 @@ public abstract class TaskClosure<R> implements Task<R>{
 	@Override
 	public int getPriority()		{return priority;}
 	
+	@Override
+	public void cancel()			{ cancelled = true; }
+	
+	/**
+	 * Has the task been asked to stop (checked by long running tasks during execute())
+	 * @return true if cancelled
+	 */
+	protected boolean isCancelled()	{ return cancelled; }
+	
 	@Override
 	public String toString() {
 		String out = name +"_"+uid+"(";